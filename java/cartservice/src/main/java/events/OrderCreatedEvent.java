@@ -0,0 +1,5 @@
+package events;
+
+import java.util.UUID;
+
+public record OrderCreatedEvent(UUID orderId, UUID userId) {}
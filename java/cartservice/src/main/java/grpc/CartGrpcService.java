@@ -0,0 +1,48 @@
+package grpc;
+
+import io.quarkus.grpc.GrpcService;
+import io.smallrye.common.annotation.Blocking;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.unchecked.Unchecked;
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+import jakarta.transaction.Transactional.TxType;
+import models.CartItem;
+import org.vladyslavplus.cartservice.Cart;
+import org.vladyslavplus.cartservice.CartService;
+import org.vladyslavplus.cartservice.GetCartRequest;
+import repositories.CartRepository;
+
+import java.util.UUID;
+
+@GrpcService
+public class CartGrpcService implements CartService {
+
+    @Inject
+    CartRepository cartRepository;
+
+    @Blocking
+    @Override
+    @Transactional(TxType.SUPPORTS)
+    public Uni<Cart> getCart(GetCartRequest request) {
+        return Uni.createFrom().item(Unchecked.supplier(() -> {
+            UUID userId = UUID.fromString(request.getUserId());
+            Cart.Builder builder = Cart.newBuilder()
+                    .setUserId(userId.toString());
+
+            models.Cart cart = cartRepository.findByUserId(userId);
+            if (cart == null) {
+                return builder.build();
+            }
+
+            builder.setSequence(cart.eventSequence);
+            for (CartItem item : cart.items) {
+                builder.addItems(org.vladyslavplus.cartservice.CartItem.newBuilder()
+                        .setProductId(item.productId.toString())
+                        .setQuantity(item.quantity)
+                        .build());
+            }
+            return builder.build();
+        }));
+    }
+}
@@ -1,14 +1,30 @@
 package messaging;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import events.OrderCreatedEvent;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import io.smallrye.mutiny.operators.multi.processors.UnicastProcessor;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.reactive.messaging.Incoming;
+import org.eclipse.microprofile.reactive.messaging.Message;
 import org.jboss.logging.Logger;
 import services.CartService;
 
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.function.Function;
 
 @ApplicationScoped
 public class OrderEventConsumer {
@@ -21,25 +37,93 @@ public class OrderEventConsumer {
     @Inject
     ObjectMapper mapper;
 
+    @ConfigProperty(name = "order-events.batch.max-size", defaultValue = "100")
+    int batchMaxSize;
+
+    @ConfigProperty(name = "order-events.batch.max-wait", defaultValue = "200ms")
+    Duration batchMaxWait;
+
     @Incoming("order-created-events")
-    public void receiveOrderCreated(String eventMessage) {
-        LOG.infof("Received order created event: %s", eventMessage);
+    public Flow.Subscriber<Message<String>> receiveOrderCreated() {
+        UnicastProcessor<Message<String>> messages = UnicastProcessor.create();
+        messages.group().intoLists().of(batchMaxSize, batchMaxWait)
+                // Pending batches are bounded by the channel's max-outstanding-messages
+                .onOverflow().buffer()
+                .emitOn(Infrastructure.getDefaultWorkerPool())
+                .onItem().transformToUniAndConcatenate(this::processBatch)
+                .subscribe().with(
+                        ignored -> {},
+                        failure -> LOG.errorf(failure, "Order created event stream failed"));
+        return messages;
+    }
+
+    private Uni<Void> processBatch(List<Message<String>> batch) {
+        List<Message<String>> accepted = new ArrayList<>(batch.size());
+        Set<UUID> userIds = new LinkedHashSet<>();
+
+        for (Message<String> message : batch) {
+            OrderCreatedEvent event;
+            try {
+                event = parse(message.getPayload());
+            } catch (Exception e) {
+                LOG.errorf(e, "Failed to parse order created event: %s", message.getPayload());
+                message.ack();
+                continue;
+            }
+            LOG.debugf("Processing order creation: orderId=%s, userId=%s", event.orderId(), event.userId());
+            userIds.add(event.userId());
+            accepted.add(message);
+        }
+
+        if (accepted.isEmpty()) {
+            return Uni.createFrom().voidItem();
+        }
 
         try {
-            JsonNode event = mapper.readTree(eventMessage);
-            UUID orderId = UUID.fromString(event.get("orderId").asText());
-            UUID userId = UUID.fromString(event.get("userId").asText());
-            int itemCount = event.get("items").size();
+            int cleared = cartService.clearCarts(userIds);
+            LOG.infof("Cleared %d carts for %d order created events", cleared, accepted.size());
+        } catch (Exception e) {
+            // Requeued by the channel's failure strategy; unparseable events were acked above, so nothing here loops forever
+            LOG.errorf(e, "Failed to clear carts for %d order created events", accepted.size());
+            return settle(accepted, message -> message.nack(e));
+        }
 
-            LOG.infof("Processing order creation: orderId=%s, userId=%s, items=%d",
-                    orderId, userId, itemCount);
+        return settle(accepted, Message::ack);
+    }
 
-            cartService.clearCart(userId);
+    // The batch is settled as a unit: every message gets the same outcome
+    private static Uni<Void> settle(List<Message<String>> batch, Function<Message<String>, CompletionStage<Void>> outcome) {
+        return Uni.join().all(batch.stream()
+                        .map(message -> Uni.createFrom().completionStage(outcome.apply(message)))
+                        .toList())
+                .andCollectFailures()
+                .replaceWithVoid()
+                .onFailure().recoverWithNull();
+    }
 
-            LOG.infof("Cart cleared for user %s after order %s creation", userId, orderId);
+    // Reads only the two ids and skips over the item list instead of building a tree
+    private OrderCreatedEvent parse(String payload) throws IOException {
+        UUID orderId = null;
+        UUID userId = null;
 
-        } catch (Exception e) {
-            LOG.errorf(e, "Failed to process order created event: %s", eventMessage);
+        try (JsonParser parser = mapper.getFactory().createParser(payload)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Expected a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME && (orderId == null || userId == null)) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "orderId" -> orderId = UUID.fromString(parser.getText());
+                    case "userId" -> userId = UUID.fromString(parser.getText());
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+
+        if (orderId == null || userId == null) {
+            throw new IOException("Missing orderId or userId");
         }
+        return new OrderCreatedEvent(orderId, userId);
     }
-}
\ No newline at end of file
+}
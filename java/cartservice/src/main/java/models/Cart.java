@@ -13,7 +13,7 @@ import java.util.UUID;
 public class Cart extends PanacheEntityBase {
 
     @Id
-    @GeneratedValue
+    @TimeOrderedUuid
     @Column(columnDefinition = "uuid", updatable = false, nullable = false)
     public UUID id;
 
@@ -23,6 +23,9 @@ public class Cart extends PanacheEntityBase {
     @Column(nullable = false)
     public LocalDateTime createdAt = LocalDateTime.now();
 
+    @Column(columnDefinition = "bigint not null default 0")
+    public long eventSequence;
+
     @OneToMany(mappedBy = "cart", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.EAGER)
     @JsonManagedReference
     public List<CartItem> items = new ArrayList<>();
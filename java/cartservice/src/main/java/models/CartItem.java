@@ -10,7 +10,7 @@ import java.util.UUID;
 public class CartItem extends PanacheEntityBase {
 
     @Id
-    @GeneratedValue
+    @TimeOrderedUuid
     @Column(columnDefinition = "uuid", updatable = false, nullable = false)
     public UUID id;
 
@@ -2,8 +2,11 @@ package repositories;
 
 import io.quarkus.hibernate.orm.panache.PanacheRepository;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.persistence.LockModeType;
 import models.Cart;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
 @ApplicationScoped
@@ -11,4 +14,20 @@ public class CartRepository implements PanacheRepository<Cart> {
     public Cart findByUserId(UUID userId) {
         return find("userId", userId).firstResult();
     }
+
+    public Cart findByUserIdForUpdate(UUID userId) {
+        return find("userId", userId).withLock(LockModeType.PESSIMISTIC_WRITE).firstResult();
+    }
+
+    // One statement bumps every matching cart and row-locks it, same as findByUserIdForUpdate
+    @SuppressWarnings("unchecked")
+    public List<Object[]> advanceEventSequences(Collection<UUID> userIds) {
+        return getEntityManager().createNativeQuery("""
+                        UPDATE carts SET eventSequence = eventSequence + 1
+                        WHERE userId IN (:userIds)
+                        RETURNING id, userId, eventSequence
+                        """)
+                .setParameter("userIds", userIds)
+                .getResultList();
+    }
 }
\ No newline at end of file
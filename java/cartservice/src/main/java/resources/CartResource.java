@@ -12,6 +12,7 @@ import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.security.SecurityRequirement;
+import ratelimit.RateLimited;
 import security.JwtUtils;
 import services.CartService;
 
@@ -41,6 +42,7 @@ public class CartResource {
     @POST
     @Path("/items")
     @RolesAllowed({"Admin", "User"})
+    @RateLimited
     @Operation(summary = "Add item to cart")
     public Response addItem(@Valid AddItemRequest request) {
         UUID userId = jwtUtils.getUserIdFromToken();
@@ -51,6 +53,7 @@ public class CartResource {
     @DELETE
     @Path("/items/{productId}")
     @RolesAllowed({"Admin", "User"})
+    @RateLimited
     @Operation(summary = "Remove item from cart")
     public Response removeItem(@PathParam("productId") UUID productId) {
         UUID userId = jwtUtils.getUserIdFromToken();
@@ -61,6 +64,7 @@ public class CartResource {
     @PUT
     @Path("/items/{productId}/quantity")
     @RolesAllowed({"Admin", "User"})
+    @RateLimited
     @Operation(summary = "Change item quantity in cart")
     public Response changeQuantity(@PathParam("productId") UUID productId,
                                    @Valid ChangeQuantityRequest request) {
@@ -72,6 +76,7 @@ public class CartResource {
     @DELETE
     @Path("/items/clear")
     @RolesAllowed({"Admin", "User"})
+    @RateLimited
     @Operation(summary = "Clear user's cart")
     public Response clearCart() {
         UUID userId = jwtUtils.getUserIdFromToken();
@@ -8,6 +8,9 @@ import exceptions.CartItemNotFoundException;
 import exceptions.ProductNotAvailableException;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
 import jakarta.transaction.Transactional;
 import jakarta.transaction.Transactional.TxType;
 import jakarta.validation.Valid;
@@ -18,6 +21,7 @@ import org.eclipse.microprofile.reactive.messaging.Channel;
 import org.eclipse.microprofile.reactive.messaging.Emitter;
 import repositories.CartRepository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 import java.util.stream.Collectors;
@@ -35,6 +39,9 @@ public class CartService {
     @Channel("cart-events")
     Emitter<String> cartEventEmitter;
 
+    @Inject
+    TransactionSynchronizationRegistry transactionRegistry;
+
     @Transactional(TxType.SUPPORTS)
     public CartResponse getCart(UUID userId) {
         Cart cart = cartRepository.findByUserId(userId);
@@ -90,9 +97,7 @@ public class CartService {
         }
 
         cart.persist();
-        cartEventEmitter.send(
-                "CartItemAdded:" + cart.userId + ":" + request.getProductId() + ":" + request.getQuantity()
-        );
+        sendCartEvent(cart, "CartItemAdded:" + cart.userId + ":" + request.getProductId() + ":" + request.getQuantity());
     }
 
     @Transactional
@@ -109,7 +114,7 @@ public class CartService {
         item.delete();
         cart.items.remove(item);
         cart.persist();
-        cartEventEmitter.send("CartItemRemoved:" + cart.userId + ":" + productId);
+        sendCartEvent(cart, "CartItemRemoved:" + cart.userId + ":" + productId);
     }
 
     @Transactional
@@ -122,7 +127,25 @@ public class CartService {
         }
         cart.items.clear();
         cart.persist();
-        cartEventEmitter.send("CartCleared:" + userId);
+        sendCartEvent(cart, "CartCleared:" + userId);
+    }
+
+    @Transactional
+    public int clearCarts(Collection<UUID> userIds) {
+        List<Object[]> carts = cartRepository.advanceEventSequences(userIds);
+        if (carts.isEmpty()) {
+            return 0;
+        }
+
+        List<UUID> cartIds = carts.stream()
+                .map(row -> (UUID) row[0])
+                .toList();
+        CartItem.delete("cart.id in ?1", cartIds);
+
+        for (Object[] row : carts) {
+            sendAfterCommit("CartCleared:" + row[1] + ":" + row[2]);
+        }
+        return carts.size();
     }
 
     @Transactional
@@ -162,11 +185,32 @@ public class CartService {
         item.persist();
         cart.persist();
 
-        cartEventEmitter.send("CartItemQuantityChanged:" + cart.userId + ":" + productId + ":" + newQuantity);
+        sendCartEvent(cart, "CartItemQuantityChanged:" + cart.userId + ":" + productId + ":" + newQuantity);
+    }
+
+    private void sendCartEvent(Cart cart, String event) {
+        cart.eventSequence++;
+        sendAfterCommit(event + ":" + cart.eventSequence);
+    }
+
+    // The projection skips sequences it has already seen, so a sequence from a rolled-back change must never go out
+    private void sendAfterCommit(String event) {
+        transactionRegistry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    cartEventEmitter.send(event);
+                }
+            }
+        });
     }
 
     private Cart getCartEntity(UUID userId) {
-        Cart cart = cartRepository.findByUserId(userId);
+        Cart cart = cartRepository.findByUserIdForUpdate(userId);
         if (cart == null) {
             cart = createCart(userId);
         }
@@ -0,0 +1,19 @@
+package ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RateLimitFilterTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    void retryAfterRoundsTheWaitUpToWholeSeconds() {
+        assertEquals(1, RateLimitFilter.retryAfterSeconds(1));
+        assertEquals(1, RateLimitFilter.retryAfterSeconds(SECOND / 10));
+        assertEquals(1, RateLimitFilter.retryAfterSeconds(SECOND));
+        assertEquals(2, RateLimitFilter.retryAfterSeconds(SECOND + 1));
+        assertEquals(60, RateLimitFilter.retryAfterSeconds(60 * SECOND));
+    }
+}
@@ -0,0 +1,85 @@
+package dedup;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.transaction.Transactional;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+// processed_messages is the source of truth. The Bloom filter only lets the common case, a key never seen before,
+// skip the lookup; it starts empty after a restart, which costs lookups but never lets a duplicate through.
+@ApplicationScoped
+public class MessageDeduplicator {
+
+    private static final Logger LOG = Logger.getLogger(MessageDeduplicator.class);
+
+    @Inject
+    EntityManager entityManager;
+
+    @ConfigProperty(name = "notifications.dedup.ttl", defaultValue = "30d")
+    Duration ttl;
+
+    @ConfigProperty(name = "notifications.dedup.expected-keys", defaultValue = "1000000")
+    long expectedKeys;
+
+    @ConfigProperty(name = "notifications.dedup.false-positive-rate", defaultValue = "0.01")
+    double falsePositiveRate;
+
+    @ConfigProperty(name = "notifications.dedup.generations", defaultValue = "4")
+    int generations;
+
+    private TimeWindowedBloomFilter seen;
+
+    @PostConstruct
+    void init() {
+        seen = new TimeWindowedBloomFilter(expectedKeys, falsePositiveRate, generations, ttl);
+    }
+
+    public boolean isProcessed(String key) {
+        if (!seen.mightContain(key)) {
+            return false;
+        }
+        return QuarkusTransaction.joiningExisting().call(() -> !entityManager.createNativeQuery(
+                        "SELECT 1 FROM processed_messages WHERE messageKey = :key AND processedAt >= :cutoff")
+                .setParameter("key", key)
+                .setParameter("cutoff", LocalDateTime.now().minus(ttl))
+                .getResultList()
+                .isEmpty());
+    }
+
+    // Claims the key in the caller's transaction, so the mark and the work it guards commit or roll back together.
+    // Returns false when the key was already processed within the TTL.
+    @Transactional(Transactional.TxType.MANDATORY)
+    public boolean markProcessed(String key) {
+        LocalDateTime now = LocalDateTime.now();
+        int claimed = entityManager.createNativeQuery("""
+                        INSERT INTO processed_messages (messageKey, processedAt) VALUES (:key, :now)
+                        ON CONFLICT (messageKey) DO UPDATE SET processedAt = EXCLUDED.processedAt
+                        WHERE processed_messages.processedAt < :cutoff
+                        """)
+                .setParameter("key", key)
+                .setParameter("now", now)
+                .setParameter("cutoff", now.minus(ttl))
+                .executeUpdate();
+        seen.put(key);
+        return claimed > 0;
+    }
+
+    @Scheduled(every = "{notifications.dedup.purge-interval}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void purgeExpired() {
+        int purged = QuarkusTransaction.requiringNew().call(() -> entityManager.createNativeQuery(
+                        "DELETE FROM processed_messages WHERE processedAt < :cutoff")
+                .setParameter("cutoff", LocalDateTime.now().minus(ttl))
+                .executeUpdate());
+        if (purged > 0) {
+            LOG.infof("Purged %d expired message keys", purged);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package dedup;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+// A Bloom filter split into generations that each cover window / generations. New keys go into the newest
+// generation and the oldest is wiped as time moves on, so memory stays fixed however many keys pass through,
+// and a key is forgotten somewhere between (generations - 1) / generations of the window and the full window.
+// A lookup checks every generation, so each is sized for falsePositiveRate / generations to keep the filter's
+// overall false-positive rate at falsePositiveRate once all of them are full.
+public class TimeWindowedBloomFilter {
+
+    private final int bits;
+    private final int hashes;
+    private final long generationNanos;
+    private final LongSupplier clock;
+    private final AtomicLongArray[] generations;
+
+    private volatile int current;
+    private volatile long currentStartedAt;
+
+    public TimeWindowedBloomFilter(long expectedKeys, double falsePositiveRate, int generationCount, Duration window) {
+        this(expectedKeys, falsePositiveRate, generationCount, window, System::nanoTime);
+    }
+
+    TimeWindowedBloomFilter(long expectedKeys, double falsePositiveRate, int generationCount, Duration window,
+                            LongSupplier clock) {
+        long perGeneration = Math.max(1, expectedKeys / generationCount);
+        double perGenerationRate = falsePositiveRate / generationCount;
+        long optimalBits = (long) Math.ceil(-perGeneration * Math.log(perGenerationRate) / (Math.log(2) * Math.log(2)));
+        this.bits = (int) Math.min(Integer.MAX_VALUE - 63, Math.max(64, optimalBits));
+        this.hashes = Math.max(1, (int) Math.round((double) bits / perGeneration * Math.log(2)));
+        this.generationNanos = window.toNanos() / generationCount;
+        this.clock = clock;
+        this.generations = new AtomicLongArray[generationCount];
+        for (int i = 0; i < generationCount; i++) {
+            generations[i] = new AtomicLongArray((bits + 63) / 64);
+        }
+        this.currentStartedAt = clock.getAsLong();
+    }
+
+    public boolean mightContain(String key) {
+        rotateIfDue();
+        long hash = hash(key);
+        for (AtomicLongArray generation : generations) {
+            if (containsAll(generation, hash)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void put(String key) {
+        rotateIfDue();
+        long hash = hash(key);
+        AtomicLongArray generation = generations[current];
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashes; i++) {
+            int bit = Math.floorMod(h1 + i * h2, bits);
+            int word = bit >>> 6;
+            long mask = 1L << bit;
+            long value;
+            while (((value = generation.get(word)) & mask) == 0 && !generation.compareAndSet(word, value, value | mask)) {
+                // another writer changed the word; retry with its value
+            }
+        }
+    }
+
+    private boolean containsAll(AtomicLongArray generation, long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashes; i++) {
+            int bit = Math.floorMod(h1 + i * h2, bits);
+            if ((generation.get(bit >>> 6) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rotateIfDue() {
+        if (clock.getAsLong() - currentStartedAt < generationNanos) {
+            return;
+        }
+        synchronized (this) {
+            long behind = (clock.getAsLong() - currentStartedAt) / generationNanos;
+            // After a long idle spell every generation is stale, so wiping each one once is enough
+            for (long i = 0; i < Math.min(behind, generations.length); i++) {
+                int next = (current + 1) % generations.length;
+                AtomicLongArray oldest = generations[next];
+                for (int word = 0; word < oldest.length(); word++) {
+                    oldest.set(word, 0);
+                }
+                current = next;
+            }
+            currentStartedAt += behind * generationNanos;
+        }
+    }
+
+    // FNV-1a over the UTF-8 bytes, finished with the SplitMix64 mixer so both 32-bit halves are well spread
+    private static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        return h ^ (h >>> 31);
+    }
+}
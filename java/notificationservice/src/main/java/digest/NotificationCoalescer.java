@@ -0,0 +1,173 @@
+package digest;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import mail.DigestPart;
+import mail.EmailTemplates;
+import models.Notification;
+import models.NotificationPriority;
+import models.NotificationStatus;
+import models.NotificationType;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+// Notifications that can wait are stored as COALESCING and buffered per user and type. The first one opens a
+// window on the timer wheel; when it closes, everything buffered goes out as a single digest email.
+// The rows are the durable copy of the buffer, so a crashed replica's windows are picked up by the sweep.
+@ApplicationScoped
+public class NotificationCoalescer {
+
+    private static final Logger LOG = Logger.getLogger(NotificationCoalescer.class);
+
+    @Inject
+    TransactionSynchronizationRegistry transactionRegistry;
+
+    @ConfigProperty(name = "notifications.digest.window", defaultValue = "5m")
+    Duration window;
+
+    @ConfigProperty(name = "notifications.digest.tick", defaultValue = "1s")
+    Duration tick;
+
+    @ConfigProperty(name = "notifications.digest.wheel-slots", defaultValue = "512")
+    int wheelSlots;
+
+    private TimerWheel<DigestKey> wheel;
+    final Map<DigestKey, List<UUID>> buffers = new ConcurrentHashMap<>();
+
+    public record DigestKey(UUID userId, NotificationType type) {}
+
+    @PostConstruct
+    void init() {
+        wheel = new TimerWheel<>(tick, wheelSlots);
+    }
+
+    // Call in the transaction that stored the notification; it joins the buffer only once that commits
+    public void add(Notification notification) {
+        DigestKey key = new DigestKey(notification.userId, notification.type);
+        UUID id = notification.id;
+        transactionRegistry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    buffer(key, id);
+                }
+            }
+        });
+    }
+
+    private void buffer(DigestKey key, UUID id) {
+        buffers.compute(key, (k, ids) -> {
+            if (ids == null) {
+                ids = new ArrayList<>();
+                wheel.schedule(k, System.nanoTime() + window.toNanos());
+            }
+            ids.add(id);
+            return ids;
+        });
+    }
+
+    @Scheduled(every = "{notifications.digest.tick}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void closeExpiredWindows() {
+        for (DigestKey key : wheel.advance(System.nanoTime())) {
+            List<UUID> ids = buffers.remove(key);
+            if (ids != null) {
+                flush(ids);
+            }
+        }
+    }
+
+    // Picks up rows whose window should long have closed, e.g. because the replica buffering them went away
+    @Scheduled(every = "{notifications.digest.sweep-interval}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void sweepStale() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(window.multipliedBy(2));
+        List<Notification> stale = QuarkusTransaction.requiringNew().call(() ->
+                Notification.<Notification>list("status = ?1 and createdAt < ?2", NotificationStatus.COALESCING, cutoff));
+        stale.stream()
+                .collect(Collectors.groupingBy(n -> new DigestKey(n.userId, n.type),
+                        Collectors.mapping(n -> n.id, Collectors.toList())))
+                .values()
+                .forEach(this::flush);
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        for (DigestKey key : List.copyOf(buffers.keySet())) {
+            List<UUID> ids = buffers.remove(key);
+            if (ids != null) {
+                flush(ids);
+            }
+        }
+    }
+
+    private void flush(List<UUID> ids) {
+        try {
+            QuarkusTransaction.requiringNew().run(() -> merge(ids));
+        } catch (RuntimeException e) {
+            // The rows stay COALESCING, so the sweep retries them
+            LOG.errorf(e, "Failed to merge %d notifications into a digest", ids.size());
+        }
+    }
+
+    private void merge(List<UUID> ids) {
+        List<Notification> parts = Notification.lockCoalescing(ids);
+        Notification digest = digestOf(parts, LocalDateTime.now());
+        if (digest == null) {
+            return;
+        }
+        digest.persist();
+
+        for (Notification part : parts) {
+            part.status = NotificationStatus.MERGED;
+            part.digestId = digest.id;
+        }
+        LOG.infof("Merged %d notifications for user %s into digest %s", parts.size(), digest.userId, digest.id);
+    }
+
+    // A window with a single notification releases it as is and needs no digest; only two or more become one
+    Notification digestOf(List<Notification> parts, LocalDateTime now) {
+        if (parts.isEmpty()) {
+            return null;
+        }
+        if (parts.size() == 1) {
+            Notification single = parts.get(0);
+            single.status = NotificationStatus.PENDING;
+            single.nextAttemptAt = now;
+            return null;
+        }
+
+        Notification latest = parts.get(parts.size() - 1);
+        Notification digest = Notification.email(latest.userId, latest.recipient,
+                "Your Orderly updates (" + parts.size() + ")", renderDigest(parts));
+        // The digest is as urgent as the most urgent notification it carries
+        digest.priority = parts.stream()
+                .map(part -> part.priority)
+                .min(Comparator.naturalOrder())
+                .orElse(NotificationPriority.NORMAL);
+        return digest;
+    }
+
+    String renderDigest(List<Notification> parts) {
+        return EmailTemplates.digest(parts.stream().map(DigestPart::of).toList()).render();
+    }
+}
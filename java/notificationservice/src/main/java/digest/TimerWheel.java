@@ -0,0 +1,52 @@
+package digest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+// Hashed timer wheel: a deadline lands in the slot for its tick, so scheduling is O(1) and each advance only looks
+// at the slots it passes, however many windows are open. Deadlines further out than one turn stay in their slot
+// until the wheel comes round to their tick.
+public class TimerWheel<K> {
+
+    private final long tickNanos;
+    private final List<Entry<K>>[] slots;
+    private final long startedAt;
+    private long currentTick;
+
+    private record Entry<K>(K key, long tick) {}
+
+    @SuppressWarnings("unchecked")
+    public TimerWheel(Duration tick, int slotCount) {
+        this.tickNanos = tick.toNanos();
+        this.slots = new List[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            slots[i] = new ArrayList<>();
+        }
+        this.startedAt = System.nanoTime();
+    }
+
+    public synchronized void schedule(K key, long deadlineNanos) {
+        long tick = Math.max(currentTick + 1, Math.ceilDiv(deadlineNanos - startedAt, tickNanos));
+        slots[(int) (tick % slots.length)].add(new Entry<>(key, tick));
+    }
+
+    // Returns every key whose deadline has passed by now
+    public synchronized List<K> advance(long nowNanos) {
+        long target = (nowNanos - startedAt) / tickNanos;
+        List<K> expired = new ArrayList<>();
+        while (currentTick < target) {
+            currentTick++;
+            Iterator<Entry<K>> entries = slots[(int) (currentTick % slots.length)].iterator();
+            while (entries.hasNext()) {
+                Entry<K> entry = entries.next();
+                if (entry.tick() <= currentTick) {
+                    entries.remove();
+                    expired.add(entry.key());
+                }
+            }
+        }
+        return expired;
+    }
+}
@@ -0,0 +1,67 @@
+package grpc;
+
+import io.smallrye.mutiny.Uni;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+// Caps how many sends are in flight across every caller, without blocking a thread while waiting: a send that
+// finds no free slot is queued and started by whichever send finishes next.
+class ConnectionSlots {
+
+    private final Semaphore slots;
+    private final Queue<Runnable> waiting = new ConcurrentLinkedQueue<>();
+
+    ConnectionSlots(int slots) {
+        this.slots = new Semaphore(Math.max(1, slots));
+    }
+
+    // Subscribes to the task once a slot is free and holds the slot until the task completes or fails
+    <T> Uni<T> withSlot(Supplier<Uni<T>> task) {
+        return Uni.createFrom().emitter(emitter -> {
+            waiting.add(() -> {
+                Uni<T> uni;
+                try {
+                    uni = task.get();
+                } catch (RuntimeException e) {
+                    release();
+                    emitter.fail(e);
+                    return;
+                }
+                uni.subscribe().with(
+                        item -> {
+                            release();
+                            emitter.complete(item);
+                        },
+                        failure -> {
+                            release();
+                            emitter.fail(failure);
+                        });
+            });
+            startWaiting();
+        });
+    }
+
+    int available() {
+        return slots.availablePermits();
+    }
+
+    private void release() {
+        slots.release();
+        startWaiting();
+    }
+
+    // A waiter added while another thread held the last slot is picked up by that thread's release
+    private void startWaiting() {
+        while (!waiting.isEmpty() && slots.tryAcquire()) {
+            Runnable next = waiting.poll();
+            if (next == null) {
+                slots.release();
+            } else {
+                next.run();
+            }
+        }
+    }
+}
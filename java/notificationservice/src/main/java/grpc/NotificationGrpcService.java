@@ -1,48 +1,295 @@
 package grpc;
 
+import com.google.protobuf.Timestamp;
+import io.grpc.Status;
 import io.quarkus.grpc.GrpcService;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
-import io.smallrye.mutiny.unchecked.Unchecked;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
 import jakarta.inject.Inject;
+import models.Notification;
+import models.NotificationPriority;
+import models.NotificationState;
+import models.NotificationStatus;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
+import org.vladyslavplus.notificationservice.DeliveryStatus;
+import org.vladyslavplus.notificationservice.NotificationAcceptance;
 import org.vladyslavplus.notificationservice.NotificationRequest;
 import org.vladyslavplus.notificationservice.NotificationResponse;
 import org.vladyslavplus.notificationservice.NotificationService;
+import org.vladyslavplus.notificationservice.NotificationStatusRequest;
+import org.vladyslavplus.notificationservice.NotificationStatusResponse;
+import org.vladyslavplus.notificationservice.NotificationStatusUpdate;
 import org.vladyslavplus.notificationservice.NotificationType;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Database work runs on the worker pool via runSubscriptionOn/emitOn, so no gRPC call ever blocks the event loop
 @GrpcService
 public class NotificationGrpcService implements NotificationService {
 
     private static final Logger LOG = Logger.getLogger(NotificationGrpcService.class);
+    private static final ZoneId ZONE = ZoneId.systemDefault();
 
     @Inject
     NotificationSender notificationSender;
 
+    @ConfigProperty(name = "notifications.batch.size", defaultValue = "200")
+    int batchSize;
+
+    @ConfigProperty(name = "notifications.batch.window", defaultValue = "100ms")
+    Duration batchWindow;
+
+    @ConfigProperty(name = "notifications.batch.max-pending", defaultValue = "64")
+    int maxPendingBatches;
+
+    @ConfigProperty(name = "notifications.status.max-ids", defaultValue = "500")
+    int maxStatusIds;
+
+    @ConfigProperty(name = "notifications.status.watch-interval", defaultValue = "1s")
+    Duration watchInterval;
+
+    @ConfigProperty(name = "notifications.status.watch-timeout", defaultValue = "10m")
+    Duration watchTimeout;
+
+    private record Sequenced(long sequence, NotificationRequest request) {}
+
+    private record Poll(List<NotificationStatusUpdate> changes, boolean done) {}
+
     @Override
     public Uni<NotificationResponse> sendNotification(NotificationRequest request) {
-        return Uni.createFrom().item(Unchecked.supplier(() -> {
-            if (request.getType() == NotificationType.EMAIL) {
-                notificationSender.sendEmail(
-                        request.getRecipient(),
-                        request.getSubject(),
-                        request.getBody()
-                );
-
-                LOG.infof("Email send triggered to %s with subject: %s",
-                        request.getRecipient(), request.getSubject());
-
-                return NotificationResponse.newBuilder()
-                        .setSuccess(true)
-                        .setMessage("Email send triggered successfully")
-                        .build();
-            } else {
-                String notImplemented = "Notification type " + request.getType().name() + " is not implemented yet.";
-                LOG.warn(notImplemented);
-                return NotificationResponse.newBuilder()
-                        .setSuccess(false)
-                        .setMessage(notImplemented)
-                        .build();
+        return Uni.createFrom().item(() -> {
+                    String invalid = validate(request);
+                    if (invalid != null) {
+                        LOG.warn(invalid);
+                        return NotificationResponse.newBuilder()
+                                .setSuccess(false)
+                                .setMessage(invalid)
+                                .build();
+                    }
+
+                    Notification notification = toNotification(request);
+                    notificationSender.enqueueAll(List.of(notification));
+                    UUID notificationId = notification.id;
+
+                    LOG.infof("Email %s queued for %s with subject: %s",
+                            notificationId, request.getRecipient(), request.getSubject());
+
+                    return NotificationResponse.newBuilder()
+                            .setSuccess(true)
+                            .setMessage("Email queued for delivery")
+                            .setNotificationId(notificationId.toString())
+                            .build();
+                })
+                .runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+    }
+
+    @Override
+    public Multi<NotificationAcceptance> sendNotifications(Multi<NotificationRequest> requests) {
+        AtomicLong sequence = new AtomicLong();
+        return requests
+                .onItem().transform(request -> new Sequenced(sequence.getAndIncrement(), request))
+                .group().intoLists().of(batchSize, batchWindow)
+                // The window timer closes batches whether or not the inserts keep up; they wait here instead of
+                // failing the stream for lack of demand
+                .onOverflow().buffer(maxPendingBatches)
+                .emitOn(Infrastructure.getDefaultWorkerPool())
+                .onItem().transformToIterable(this::acceptBatch);
+    }
+
+    @Override
+    public Uni<NotificationStatusResponse> getNotificationStatuses(NotificationStatusRequest request) {
+        return Uni.createFrom().item(() -> {
+                    List<UUID> ids = parseIds(request);
+                    Map<UUID, NotificationState> states = findStates(ids);
+                    NotificationStatusResponse.Builder response = NotificationStatusResponse.newBuilder();
+                    for (UUID id : ids) {
+                        response.addStatuses(toStatusUpdate(id, states.get(id)));
+                    }
+                    return response.build();
+                })
+                .runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+    }
+
+    // Polls rather than listening to the local worker, because any replica may deliver a given notification
+    @Override
+    public Multi<NotificationStatusUpdate> watchNotificationStatuses(NotificationStatusRequest request) {
+        Map<UUID, NotificationStatusUpdate> lastSeen = new HashMap<>();
+        return Uni.createFrom().item(() -> parseIds(request))
+                .runSubscriptionOn(Infrastructure.getDefaultWorkerPool())
+                .onItem().transformToMulti(ids -> Multi.createBy().repeating()
+                        .uni(() -> Uni.createFrom().item(() -> poll(ids, lastSeen))
+                                .runSubscriptionOn(Infrastructure.getDefaultWorkerPool()))
+                        .withDelay(watchInterval)
+                        .whilst(poll -> !poll.done()))
+                .select().first(watchTimeout)
+                .onItem().transformToIterable(Poll::changes);
+    }
+
+    // Valid requests of a batch are inserted in one transaction; invalid ones are rejected individually
+    private List<NotificationAcceptance> acceptBatch(List<Sequenced> batch) {
+        List<NotificationAcceptance> results = new ArrayList<>(batch.size());
+        List<Sequenced> accepted = new ArrayList<>(batch.size());
+        List<Notification> notifications = new ArrayList<>(batch.size());
+
+        for (Sequenced item : batch) {
+            NotificationRequest request = item.request();
+            String invalid = validate(request);
+            if (invalid != null) {
+                results.add(rejected(item.sequence(), invalid));
+                continue;
             }
-        }));
+            accepted.add(item);
+            notifications.add(toNotification(request));
+        }
+
+        if (!notifications.isEmpty()) {
+            try {
+                notificationSender.enqueueAll(notifications);
+                for (int i = 0; i < accepted.size(); i++) {
+                    results.add(NotificationAcceptance.newBuilder()
+                            .setSequence(accepted.get(i).sequence())
+                            .setAccepted(true)
+                            .setNotificationId(notifications.get(i).id.toString())
+                            .build());
+                }
+            } catch (RuntimeException e) {
+                LOG.errorf(e, "Failed to queue a batch of %d notifications", notifications.size());
+                for (Sequenced item : accepted) {
+                    results.add(rejected(item.sequence(), "Failed to queue notification: " + e.getMessage()));
+                }
+            }
+        }
+
+        results.sort((a, b) -> Long.compare(a.getSequence(), b.getSequence()));
+        return results;
+    }
+
+    // Only notifications still pending are re-read; a status is emitted the first time it is seen and whenever it changes
+    private Poll poll(List<UUID> ids, Map<UUID, NotificationStatusUpdate> lastSeen) {
+        List<UUID> open = ids.stream()
+                .filter(id -> !lastSeen.containsKey(id) || lastSeen.get(id).getStatus() == DeliveryStatus.DELIVERY_STATUS_PENDING)
+                .toList();
+        Map<UUID, NotificationState> states = findStates(open);
+
+        List<NotificationStatusUpdate> changes = new ArrayList<>();
+        boolean done = true;
+        for (UUID id : open) {
+            NotificationStatusUpdate update = toStatusUpdate(id, states.get(id));
+            if (!update.equals(lastSeen.put(id, update))) {
+                changes.add(update);
+            }
+            if (update.getStatus() == DeliveryStatus.DELIVERY_STATUS_PENDING) {
+                done = false;
+            }
+        }
+        return new Poll(changes, done);
+    }
+
+    Map<UUID, NotificationState> findStates(List<UUID> ids) {
+        Map<UUID, NotificationState> states = new HashMap<>();
+        for (NotificationState state : QuarkusTransaction.joiningExisting().call(() -> Notification.findStates(ids))) {
+            states.put(state.id(), state);
+        }
+        return states;
+    }
+
+    // Bad input is the caller's fault, so it is reported as INVALID_ARGUMENT rather than as an internal error
+    List<UUID> parseIds(NotificationStatusRequest request) {
+        if (request.getNotificationIdsCount() > maxStatusIds) {
+            throw Status.INVALID_ARGUMENT
+                    .withDescription("At most " + maxStatusIds + " notification ids per request")
+                    .asRuntimeException();
+        }
+        Set<UUID> ids = new LinkedHashSet<>();
+        for (String id : request.getNotificationIdsList()) {
+            try {
+                ids.add(UUID.fromString(id));
+            } catch (IllegalArgumentException e) {
+                throw Status.INVALID_ARGUMENT
+                        .withDescription("Invalid notification id: " + id)
+                        .asRuntimeException();
+            }
+        }
+        return List.copyOf(ids);
+    }
+
+    private static String validate(NotificationRequest request) {
+        if (request.getType() != NotificationType.EMAIL) {
+            return "Notification type " + request.getType().name() + " is not implemented yet.";
+        }
+        if (request.getRecipient().isBlank()) {
+            return "Recipient is required";
+        }
+        try {
+            UUID.fromString(request.getUserId());
+        } catch (IllegalArgumentException e) {
+            return "Invalid userId: " + request.getUserId();
+        }
+        return null;
+    }
+
+    private static Notification toNotification(NotificationRequest request) {
+        Notification notification = Notification.email(UUID.fromString(request.getUserId()),
+                request.getRecipient(), request.getSubject(), request.getBody());
+        notification.priority = switch (request.getPriority()) {
+            case PRIORITY_CRITICAL -> NotificationPriority.CRITICAL;
+            case PRIORITY_BULK -> NotificationPriority.BULK;
+            default -> NotificationPriority.NORMAL;
+        };
+        if (request.getCoalesce()) {
+            notification.status = NotificationStatus.COALESCING;
+        }
+        return notification;
+    }
+
+    private static NotificationAcceptance rejected(long sequence, String error) {
+        return NotificationAcceptance.newBuilder()
+                .setSequence(sequence)
+                .setAccepted(false)
+                .setError(error)
+                .build();
+    }
+
+    private static NotificationStatusUpdate toStatusUpdate(UUID id, NotificationState state) {
+        NotificationStatusUpdate.Builder update = NotificationStatusUpdate.newBuilder()
+                .setNotificationId(id.toString());
+        if (state == null) {
+            return update.setStatus(DeliveryStatus.DELIVERY_STATUS_UNKNOWN).build();
+        }
+
+        update.setStatus(switch (state.status()) {
+                    case PENDING, COALESCING, MERGED -> DeliveryStatus.DELIVERY_STATUS_PENDING;
+                    case SENT -> DeliveryStatus.DELIVERY_STATUS_SENT;
+                    case FAILED -> DeliveryStatus.DELIVERY_STATUS_FAILED;
+                })
+                .setAttempts(state.attempts())
+                .setLastError(Objects.requireNonNullElse(state.lastError(), ""));
+        if (state.sentAt() != null) {
+            update.setSentAt(toTimestamp(state.sentAt()));
+        }
+        return update.build();
+    }
+
+    private static Timestamp toTimestamp(LocalDateTime value) {
+        Instant instant = value.atZone(ZONE).toInstant();
+        return Timestamp.newBuilder()
+                .setSeconds(instant.getEpochSecond())
+                .setNanos(instant.getNano())
+                .build();
     }
-}
\ No newline at end of file
+}
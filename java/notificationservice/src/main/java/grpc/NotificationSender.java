@@ -2,23 +2,154 @@ package grpc;
 
 import io.quarkus.mailer.Mail;
 import io.quarkus.mailer.reactive.ReactiveMailer;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dedup.MessageDeduplicator;
+import digest.NotificationCoalescer;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
-import org.jboss.logging.Logger;
+import jakarta.transaction.Transactional;
+import models.Notification;
+import models.NotificationPriority;
+import models.NotificationStatus;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import ratelimit.TokenBucket;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
 
 @ApplicationScoped
 public class NotificationSender {
 
-    private static final Logger LOG = Logger.getLogger(NotificationSender.class);
+    private static final String LOGO_CONTENT_ID = "logo@orderly.local";
+    private static final String LOGO_CID = "cid:" + LOGO_CONTENT_ID;
 
     @Inject
     ReactiveMailer reactiveMailer;
 
-    public void sendEmail(String to, String subject, String body) {
-        reactiveMailer.send(Mail.withHtml(to, subject, body))
-                .subscribe().with(
-                        success -> LOG.infof("Email sent to %s", to),
-                        failure -> LOG.errorf(failure, "Failed to send email to %s", to)
-                );
+    @Inject
+    MessageDeduplicator messageDeduplicator;
+
+    @Inject
+    NotificationCoalescer notificationCoalescer;
+
+    // Sizes the send slots shared by every sendAll call, so concurrent batches together never hold more sends in
+    // flight than the mailer has pooled connections
+    @ConfigProperty(name = "quarkus.mailer.max-pool-size", defaultValue = "10")
+    int maxConnections;
+
+    @ConfigProperty(name = "notifications.smtp.domain-rate", defaultValue = "20")
+    double domainRate;
+
+    @ConfigProperty(name = "notifications.smtp.domain-burst", defaultValue = "40")
+    int domainBurst;
+
+    @ConfigProperty(name = "notifications.smtp.max-domains", defaultValue = "10000")
+    long maxDomains;
+
+    private byte[] logo;
+    private Cache<String, TokenBucket> domainBuckets;
+    private ConnectionSlots connectionSlots;
+
+    // Outcome of one notification in a batch: sent when failure and deferredFor are both null
+    public record SendResult(Notification notification, Throwable failure, Duration deferredFor) {}
+
+    @PostConstruct
+    void init() throws IOException {
+        domainBuckets = Caffeine.newBuilder()
+                .maximumSize(maxDomains)
+                .expireAfterAccess(Duration.ofMinutes(10))
+                .build();
+        connectionSlots = new ConnectionSlots(maxConnections);
+        loadLogo();
+    }
+
+    // Read once; every mail that references the logo shares the same bytes
+    private void loadLogo() throws IOException {
+        try (InputStream in = NotificationSender.class.getResourceAsStream("/mail/logo.svg")) {
+            if (in == null) {
+                throw new IllegalStateException("Missing mail/logo.svg resource");
+            }
+            logo = in.readAllBytes();
+        }
+    }
+
+    // Mail is only recorded here; NotificationDeliveryWorker sends it, so nothing is lost if the send fails or we stop.
+    // With a dedup key, the key and the notification commit together; returns null if the key was already processed
+    @Transactional
+    public UUID enqueueEmail(String dedupKey, NotificationPriority priority, UUID userId, String to, String subject, String body) {
+        if (dedupKey != null && !messageDeduplicator.markProcessed(dedupKey)) {
+            return null;
+        }
+
+        Notification notification = Notification.email(userId, to, subject, body);
+        notification.priority = priority;
+        notification.persist();
+        return notification.id;
+    }
+
+    // One transaction for the whole batch, flushed as batched inserts; COALESCING ones wait for their digest
+    @Transactional
+    public void enqueueAll(List<Notification> notifications) {
+        Notification.persist(notifications);
+        for (Notification notification : notifications) {
+            if (notification.status == NotificationStatus.COALESCING) {
+                notificationCoalescer.add(notification);
+            }
+        }
+    }
+
+    // Each recipient domain becomes one sequential stream, so its mails go out back to back. Every send waits for one
+    // of the shared connection slots, which bounds sends across all batches in flight, not just this one.
+    // Mails past the domain's rate are returned as deferred rather than sent.
+    public Multi<SendResult> sendAll(List<Notification> notifications) {
+        Map<String, List<Notification>> byDomain = new HashMap<>();
+        List<SendResult> deferred = new ArrayList<>();
+        for (Notification notification : notifications) {
+            String domain = domainOf(notification.recipient);
+            long wait = domainBuckets.get(domain, d -> new TokenBucket(domainRate, domainBurst)).tryAcquire();
+            if (wait > 0) {
+                deferred.add(new SendResult(notification, null, Duration.ofNanos(wait)));
+            } else {
+                byDomain.computeIfAbsent(domain, d -> new ArrayList<>()).add(notification);
+            }
+        }
+
+        Multi<SendResult> sends = Multi.createFrom().iterable(byDomain.values())
+                .onItem().transformToMulti(group -> Multi.createFrom().iterable(group)
+                        .onItem().transformToUniAndConcatenate(this::sendOne))
+                .merge(maxConnections);
+
+        return deferred.isEmpty() ? sends : Multi.createBy().concatenating()
+                .streams(Multi.createFrom().iterable(deferred), sends);
+    }
+
+    private Uni<SendResult> sendOne(Notification notification) {
+        return connectionSlots.withSlot(() -> send(notification))
+                .onItem().transform(ignored -> new SendResult(notification, null, null))
+                .onFailure().recoverWithItem(failure -> new SendResult(notification, failure, null));
+    }
+
+    private static String domainOf(String recipient) {
+        int at = recipient.lastIndexOf('@');
+        return (at >= 0 ? recipient.substring(at + 1) : recipient).toLowerCase(Locale.ROOT);
+    }
+
+    private Uni<Void> send(Notification notification) {
+        Mail mail = Mail.withHtml(notification.recipient, notification.subject, notification.body);
+        if (notification.body != null && notification.body.contains(LOGO_CID)) {
+            mail.addInlineAttachment("logo.svg", logo, "image/svg+xml", "<" + LOGO_CONTENT_ID + ">");
+        }
+        return reactiveMailer.send(mail);
     }
-}
\ No newline at end of file
+}
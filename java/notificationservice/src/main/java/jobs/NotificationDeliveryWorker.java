@@ -0,0 +1,308 @@
+package jobs;
+
+import grpc.NotificationSender;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.scheduler.Scheduled;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import models.DeliveryOutcome;
+import models.Notification;
+import models.NotificationPriority;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+@ApplicationScoped
+public class NotificationDeliveryWorker {
+
+    private static final Logger LOG = Logger.getLogger(NotificationDeliveryWorker.class);
+
+    @Inject
+    NotificationSender notificationSender;
+
+    @Inject
+    MeterRegistry meterRegistry;
+
+    @ConfigProperty(name = "notifications.delivery.claim-size", defaultValue = "50")
+    int claimSize;
+
+    @ConfigProperty(name = "notifications.delivery.max-concurrency", defaultValue = "16")
+    int maxConcurrency;
+
+    @ConfigProperty(name = "notifications.delivery.lease", defaultValue = "5m")
+    Duration lease;
+
+    @ConfigProperty(name = "notifications.delivery.max-attempts", defaultValue = "6")
+    int maxAttempts;
+
+    @ConfigProperty(name = "notifications.delivery.retry-backoff", defaultValue = "30s")
+    Duration retryBackoff;
+
+    @ConfigProperty(name = "notifications.delivery.max-backoff", defaultValue = "1h")
+    Duration maxBackoff;
+
+    @ConfigProperty(name = "notifications.delivery.shutdown-timeout", defaultValue = "30s")
+    Duration shutdownTimeout;
+
+    @ConfigProperty(name = "notifications.lanes.capacity", defaultValue = "100")
+    int laneCapacity;
+
+    @ConfigProperty(name = "notifications.lanes.critical.weight", defaultValue = "8")
+    int criticalWeight;
+
+    @ConfigProperty(name = "notifications.lanes.normal.weight", defaultValue = "3")
+    int normalWeight;
+
+    @ConfigProperty(name = "notifications.lanes.bulk.weight", defaultValue = "1")
+    int bulkWeight;
+
+    private Semaphore permits;
+    private PriorityLanes lanes;
+    private final Map<NotificationPriority, Timer> laneLatency = new EnumMap<>(NotificationPriority.class);
+    final Queue<DeliveryOutcome> outcomes = new ConcurrentLinkedQueue<>();
+    private final AtomicLong queueDepth = new AtomicLong();
+    private final AtomicLong oldestPendingSeconds = new AtomicLong();
+    private final AtomicBoolean polling = new AtomicBoolean();
+    private volatile boolean moreDue;
+    private volatile boolean stopping;
+
+    private Counter sent;
+    private Counter retried;
+    private Counter failed;
+    private Counter deferred;
+
+    @PostConstruct
+    void init() {
+        permits = new Semaphore(maxConcurrency);
+        lanes = new PriorityLanes(laneCapacity, Map.of(
+                NotificationPriority.CRITICAL, criticalWeight,
+                NotificationPriority.NORMAL, normalWeight,
+                NotificationPriority.BULK, bulkWeight));
+
+        for (NotificationPriority priority : NotificationPriority.values()) {
+            String lane = priority.name().toLowerCase(Locale.ROOT);
+            laneLatency.put(priority, Timer.builder("notifications.lane.latency")
+                    .description("Time a claimed notification waited in its lane for a send slot")
+                    .tag("lane", lane)
+                    .publishPercentiles(0.5, 0.99)
+                    .register(meterRegistry));
+            Gauge.builder("notifications.lane.depth", () -> lanes.depth(priority))
+                    .description("Claimed notifications waiting in the lane for a send slot")
+                    .tag("lane", lane)
+                    .register(meterRegistry);
+            Gauge.builder("notifications.lane.oldest.wait.seconds", () -> lanes.oldestWaitNanos(priority) / 1e9)
+                    .description("How long the head of the lane has waited for a send slot")
+                    .tag("lane", lane)
+                    .register(meterRegistry);
+        }
+
+        Gauge.builder("notifications.queue.depth", queueDepth::get)
+                .description("Notifications waiting to be delivered")
+                .register(meterRegistry);
+        Gauge.builder("notifications.queue.oldest.age.seconds", oldestPendingSeconds::get)
+                .description("Age of the oldest notification still waiting to be delivered")
+                .register(meterRegistry);
+        Gauge.builder("notifications.delivery.in.flight", () -> maxConcurrency - permits.availablePermits())
+                .description("Notifications claimed by this instance and being sent")
+                .register(meterRegistry);
+        sent = meterRegistry.counter("notifications.delivery.sent");
+        retried = meterRegistry.counter("notifications.delivery.retried");
+        failed = meterRegistry.counter("notifications.delivery.failed");
+        deferred = meterRegistry.counter("notifications.delivery.deferred");
+    }
+
+    // Claims no more than the send slots that are free, split between the lanes by weight, so a claimed row waits
+    // for at most about one round of sends and is sent well within its lease. Slots a lane has no due rows for go
+    // to the lanes that filled their share. When a lane fills its share more may be due, and the next poll starts
+    // as soon as the lanes run dry instead of on the next tick.
+    @Scheduled(every = "{notifications.delivery.poll-interval}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void poll() {
+        if (stopping || !polling.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            int free = permits.availablePermits() - lanes.depth();
+            if (free <= 0) {
+                // No slot to claim for; moreDue is left as it was, so an early poll is retried once slots free up
+                return;
+            }
+            Map<NotificationPriority, Integer> shares = lanes.shares(free);
+            List<NotificationPriority> filled = new ArrayList<>();
+            int unused = 0;
+            for (NotificationPriority priority : NotificationPriority.values()) {
+                int share = Math.min(claimSize, shares.get(priority));
+                int claimed = claim(priority, share);
+                if (claimed < share) {
+                    unused += share - claimed;
+                } else if (share > 0) {
+                    filled.add(priority);
+                }
+            }
+            for (NotificationPriority priority : filled) {
+                if (unused <= 0) {
+                    break;
+                }
+                unused -= claim(priority, unused);
+            }
+            moreDue = !filled.isEmpty();
+        } finally {
+            polling.set(false);
+            dispatch();
+        }
+    }
+
+    // A failed claim counts as nothing due, so a database outage waits for the next tick instead of re-polling at once
+    private int claim(NotificationPriority priority, int wanted) {
+        int size = Math.min(Math.min(claimSize, wanted), lanes.freeCapacity(priority));
+        if (size <= 0) {
+            return 0;
+        }
+        try {
+            List<Notification> claimed = claimDue(priority, size);
+            lanes.offer(priority, claimed);
+            return claimed.size();
+        } catch (RuntimeException e) {
+            LOG.errorf(e, "Failed to claim pending %s notifications", priority);
+            return 0;
+        }
+    }
+
+    List<Notification> claimDue(NotificationPriority priority, int size) {
+        return QuarkusTransaction.requiringNew().call(() -> Notification.claimDue(priority, size, lease));
+    }
+
+    // Runs after every claim and every completed send, so a freed slot goes straight to the next lane in turn
+    private synchronized void dispatch() {
+        if (stopping) {
+            return;
+        }
+        int slots = permits.availablePermits();
+        if (slots == 0 || !permits.tryAcquire(slots)) {
+            return;
+        }
+        List<PriorityLanes.Waiting> next = lanes.next(slots);
+        permits.release(slots - next.size());
+        if (next.size() < slots && moreDue && !polling.get()) {
+            Infrastructure.getDefaultWorkerPool().execute(this::poll);
+        }
+        if (next.isEmpty()) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        List<Notification> batch = new ArrayList<>(next.size());
+        for (PriorityLanes.Waiting waiting : next) {
+            Notification notification = waiting.notification();
+            laneLatency.get(notification.priority).record(now - waiting.queuedAt(), TimeUnit.NANOSECONDS);
+            batch.add(notification);
+        }
+        notificationSender.sendAll(batch)
+                .subscribe().with(result -> complete(toOutcome(result)));
+    }
+
+    private DeliveryOutcome toOutcome(NotificationSender.SendResult result) {
+        Notification notification = result.notification();
+        if (result.deferredFor() != null) {
+            deferred.increment();
+            return DeliveryOutcome.deferred(notification.id, LocalDateTime.now().plus(result.deferredFor()));
+        }
+        if (result.failure() != null) {
+            return onFailure(notification, result.failure());
+        }
+        sent.increment();
+        return DeliveryOutcome.sent(notification.id);
+    }
+
+    private DeliveryOutcome onFailure(Notification notification, Throwable failure) {
+        String error = String.valueOf(failure.getMessage());
+        if (notification.attempts >= maxAttempts) {
+            failed.increment();
+            LOG.errorf(failure, "Giving up on notification %s to %s after %d attempts",
+                    notification.id, notification.recipient, notification.attempts);
+            return DeliveryOutcome.failed(notification.id, error);
+        }
+
+        retried.increment();
+        Duration backoff = retryBackoff.multipliedBy(1L << Math.min(notification.attempts - 1, 20));
+        if (backoff.compareTo(maxBackoff) > 0) {
+            backoff = maxBackoff;
+        }
+        LOG.warnf("Notification %s to %s failed (attempt %d), retrying in %s: %s",
+                notification.id, notification.recipient, notification.attempts, backoff, error);
+        return DeliveryOutcome.retry(notification.id, LocalDateTime.now().plus(backoff), error);
+    }
+
+    private void complete(DeliveryOutcome outcome) {
+        outcomes.add(outcome);
+        permits.release();
+        dispatch();
+    }
+
+    // Outcomes go out as one JDBC batch; until then the rows stay leased, so a slow flush cannot cause a resend
+    @Scheduled(every = "{notifications.delivery.flush-interval}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void flush() {
+        List<DeliveryOutcome> batch = new ArrayList<>();
+        DeliveryOutcome outcome;
+        while ((outcome = outcomes.poll()) != null) {
+            batch.add(outcome);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            QuarkusTransaction.requiringNew().run(() -> Notification.recordOutcomes(batch));
+        } catch (RuntimeException e) {
+            outcomes.addAll(batch);
+            LOG.errorf(e, "Failed to record %d notification outcomes, will retry", batch.size());
+        }
+    }
+
+    @Scheduled(every = "{notifications.delivery.metrics-interval}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void refreshQueueMetrics() {
+        Object[] stats = QuarkusTransaction.requiringNew().call(Notification::pendingStats);
+        queueDepth.set(((Number) stats[0]).longValue());
+        oldestPendingSeconds.set(stats[1] == null ? 0 :
+                Math.max(0, Duration.between((LocalDateTime) stats[1], LocalDateTime.now()).toSeconds()));
+    }
+
+    // Sends already in progress get a chance to finish and be recorded; anything unsent stays PENDING for the next start
+    void onStop(@Observes ShutdownEvent event) {
+        stopping = true;
+        // Claimed but never handed to the sender: release them now rather than after the lease runs out
+        LocalDateTime now = LocalDateTime.now();
+        for (Notification notification : lanes.drain()) {
+            outcomes.add(DeliveryOutcome.deferred(notification.id, now));
+        }
+        try {
+            if (!permits.tryAcquire(maxConcurrency, shutdownTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                LOG.warnf("Shutting down with %d notifications still being sent",
+                        maxConcurrency - permits.availablePermits());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+}
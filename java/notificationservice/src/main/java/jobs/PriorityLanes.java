@@ -0,0 +1,111 @@
+package jobs;
+
+import models.Notification;
+import models.NotificationPriority;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+// One bounded queue per priority, drained by smooth weighted round robin: every pick credits each non-empty lane
+// with its weight and takes from the lane with the most credit. Lanes share the send slots in proportion to their
+// weights, a bulk backlog cannot delay critical mail by more than a few picks, and an idle lane's share goes to
+// the others instead of being left unused.
+class PriorityLanes {
+
+    private final Map<NotificationPriority, Lane> lanes = new EnumMap<>(NotificationPriority.class);
+
+    // queuedAt is System.nanoTime() when the notification was claimed into the lane
+    record Waiting(Notification notification, long queuedAt) {}
+
+    private static class Lane {
+        final ArrayDeque<Waiting> queue = new ArrayDeque<>();
+        final int capacity;
+        final int weight;
+        int credit;
+
+        Lane(int capacity, int weight) {
+            this.capacity = capacity;
+            this.weight = weight;
+        }
+    }
+
+    PriorityLanes(int capacity, Map<NotificationPriority, Integer> weights) {
+        for (NotificationPriority priority : NotificationPriority.values()) {
+            lanes.put(priority, new Lane(capacity, Math.max(1, weights.get(priority))));
+        }
+    }
+
+    synchronized int freeCapacity(NotificationPriority priority) {
+        Lane lane = lanes.get(priority);
+        return lane.capacity - lane.queue.size();
+    }
+
+    synchronized void offer(NotificationPriority priority, List<Notification> notifications) {
+        long now = System.nanoTime();
+        Lane lane = lanes.get(priority);
+        for (Notification notification : notifications) {
+            lane.queue.add(new Waiting(notification, now));
+        }
+    }
+
+    // Splits slots between the lanes by weight. Shares are rounded up so every lane gets at least one slot
+    // while any are free; the lanes together may get a slot or two more than there are.
+    synchronized Map<NotificationPriority, Integer> shares(int slots) {
+        Map<NotificationPriority, Integer> shares = new EnumMap<>(NotificationPriority.class);
+        int totalWeight = lanes.values().stream().mapToInt(lane -> lane.weight).sum();
+        lanes.forEach((priority, lane) -> shares.put(priority,
+                slots <= 0 ? 0 : (int) Math.ceilDiv((long) slots * lane.weight, totalWeight)));
+        return shares;
+    }
+
+    synchronized List<Waiting> next(int max) {
+        List<Waiting> picked = new ArrayList<>(max);
+        while (picked.size() < max) {
+            Lane best = null;
+            int totalWeight = 0;
+            for (Lane lane : lanes.values()) {
+                if (lane.queue.isEmpty()) {
+                    continue;
+                }
+                lane.credit += lane.weight;
+                totalWeight += lane.weight;
+                if (best == null || lane.credit > best.credit) {
+                    best = lane;
+                }
+            }
+            if (best == null) {
+                break;
+            }
+            best.credit -= totalWeight;
+            picked.add(best.queue.poll());
+        }
+        return picked;
+    }
+
+    synchronized List<Notification> drain() {
+        List<Notification> drained = new ArrayList<>();
+        for (Lane lane : lanes.values()) {
+            lane.queue.forEach(waiting -> drained.add(waiting.notification()));
+            lane.queue.clear();
+            lane.credit = 0;
+        }
+        return drained;
+    }
+
+    synchronized int depth(NotificationPriority priority) {
+        return lanes.get(priority).queue.size();
+    }
+
+    synchronized int depth() {
+        return lanes.values().stream().mapToInt(lane -> lane.queue.size()).sum();
+    }
+
+    // How long the head of the lane has been waiting for a send slot; keeps growing while the lane is starved
+    synchronized long oldestWaitNanos(NotificationPriority priority) {
+        Waiting head = lanes.get(priority).queue.peek();
+        return head == null ? 0 : System.nanoTime() - head.queuedAt();
+    }
+}
@@ -0,0 +1,27 @@
+package mail;
+
+import models.Notification;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// One notification inside a digest. Notification bodies are usually complete HTML documents, so only what is between
+// their <body> tags is kept; a digest of whole documents nested in divs is invalid HTML that mail clients mangle.
+public record DigestPart(String subject, String content) {
+
+    private static final Pattern BODY = Pattern.compile("<body\\b[^>]*>(.*)</body\\s*>",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    public static DigestPart of(Notification notification) {
+        return new DigestPart(notification.subject, bodyContent(notification.body));
+    }
+
+    // A body without a <body> element is already a fragment and is kept as is
+    static String bodyContent(String html) {
+        if (html == null) {
+            return null;
+        }
+        Matcher body = BODY.matcher(html);
+        return body.find() ? body.group(1).strip() : html;
+    }
+}
@@ -0,0 +1,18 @@
+package mail;
+
+import io.quarkus.qute.CheckedTemplate;
+import io.quarkus.qute.TemplateInstance;
+
+import java.util.List;
+
+// One method per email, backed by templates/email/<method>.html. Templates are parsed and validated against these
+// signatures at build time, values are HTML-escaped, and rendering only appends the pre-split static text between them.
+// A new notification type is a new method here plus its template.
+@CheckedTemplate(basePath = "email")
+public class EmailTemplates {
+
+    public static native TemplateInstance welcome(String userName, String email);
+
+    // Part contents are already rendered HTML fragments and are embedded unescaped
+    public static native TemplateInstance digest(List<DigestPart> parts);
+}
@@ -0,0 +1,203 @@
+package messaging;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import io.smallrye.reactive.messaging.rabbitmq.IncomingRabbitMQMetadata;
+import io.smallrye.reactive.messaging.rabbitmq.OutgoingRabbitMQMetadata;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.reactive.messaging.Emitter;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+
+// A failed message is republished to the delay queue for its attempt and acked. The delay queue has no consumer;
+// its TTL dead-letters the message back to the source queue, so retries neither block the stream nor loop hot.
+// Once every delay is used up, or the failure is permanent, the message is parked for manual inspection.
+@ApplicationScoped
+public class DelayedRetry {
+
+    private static final Logger LOG = Logger.getLogger(DelayedRetry.class);
+
+    static final String RETRY_COUNT_HEADER = "x-retry-count";
+    static final String LAST_ERROR_HEADER = "x-last-error";
+
+    @Inject
+    @org.eclipse.microprofile.reactive.messaging.Channel("consumer-retries")
+    Emitter<byte[]> retryEmitter;
+
+    @Inject
+    MeterRegistry meterRegistry;
+
+    @ConfigProperty(name = "messaging.retry.exchange", defaultValue = "notificationservice-retries")
+    String exchange;
+
+    @ConfigProperty(name = "messaging.retry.queues")
+    List<String> queues;
+
+    @ConfigProperty(name = "messaging.retry.delays", defaultValue = "10s,1m,10m,1h")
+    List<Duration> delays;
+
+    // The same broker the retry channel publishes to
+    @ConfigProperty(name = "mp.messaging.outgoing.consumer-retries.host")
+    String host;
+
+    @ConfigProperty(name = "mp.messaging.outgoing.consumer-retries.port", defaultValue = "5672")
+    int port;
+
+    @ConfigProperty(name = "mp.messaging.outgoing.consumer-retries.username", defaultValue = "guest")
+    String username;
+
+    @ConfigProperty(name = "mp.messaging.outgoing.consumer-retries.password", defaultValue = "guest")
+    String password;
+
+    private volatile boolean declared;
+
+    // The broker may come up after this service, so the topology is declared in the background and retried
+    // instead of failing the boot. A republish that comes first declares it itself.
+    void onStart(@Observes StartupEvent event) {
+        topology()
+                .onFailure().invoke(failure -> LOG.warnf("Retry topology not declared yet: %s", failure.getMessage()))
+                .onFailure().retry().withBackOff(Duration.ofSeconds(1), Duration.ofMinutes(1)).indefinitely()
+                .subscribe().with(ignored -> {});
+    }
+
+    private Uni<Void> topology() {
+        if (declared) {
+            return Uni.createFrom().voidItem();
+        }
+        return Uni.createFrom().<Void>item(() -> {
+                    try {
+                        declareOnce();
+                    } catch (IOException | TimeoutException e) {
+                        throw new IllegalStateException("Failed to declare the retry topology", e);
+                    }
+                    return null;
+                })
+                .runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+    }
+
+    private synchronized void declareOnce() throws IOException, TimeoutException {
+        if (declared) {
+            return;
+        }
+        declareTopology();
+        declared = true;
+        LOG.infof("Declared retry topology on %s for %s", exchange, queues);
+    }
+
+    // The connector only declares queues it consumes from, so the delay and parking-lot queues are declared here
+    void declareTopology() throws IOException, TimeoutException {
+        ConnectionFactory factory = new ConnectionFactory();
+        factory.setHost(host);
+        factory.setPort(port);
+        factory.setUsername(username);
+        factory.setPassword(password);
+
+        try (Connection connection = factory.newConnection("notificationservice-retry-topology");
+             Channel channel = connection.createChannel()) {
+            channel.exchangeDeclare(exchange, "direct", true);
+            for (String queue : queues) {
+                for (int attempt = 1; attempt <= delays.size(); attempt++) {
+                    String delayQueue = delayQueue(queue, attempt);
+                    channel.queueDeclare(delayQueue, true, false, false, Map.of(
+                            "x-message-ttl", delays.get(attempt - 1).toMillis(),
+                            "x-dead-letter-exchange", "",
+                            "x-dead-letter-routing-key", queue));
+                    channel.queueBind(delayQueue, exchange, delayQueue);
+                }
+                channel.queueDeclare(parkingLot(queue), true, false, false, null);
+                channel.queueBind(parkingLot(queue), exchange, parkingLot(queue));
+            }
+        }
+    }
+
+    public Uni<Void> retryOrPark(Message<byte[]> message, String queue, Throwable failure) {
+        int attempt = retryCount(message) + 1;
+        if (attempt > delays.size()) {
+            return park(message, queue, failure);
+        }
+        LOG.warnf("Retrying message from %s in %s (retry %d of %d): %s",
+                queue, delays.get(attempt - 1), attempt, delays.size(), failure.getMessage());
+        return republish(message, delayQueue(queue, attempt), attempt, failure)
+                .invoke(() -> meterRegistry.counter("messaging.consumer.retried", "queue", queue).increment());
+    }
+
+    public Uni<Void> park(Message<byte[]> message, String queue, Throwable failure) {
+        LOG.errorf(failure, "Parking message from %s after %d retries", queue, retryCount(message));
+        return republish(message, parkingLot(queue), retryCount(message), failure)
+                .invoke(() -> meterRegistry.counter("messaging.consumer.parked", "queue", queue).increment());
+    }
+
+    // The original is acked only once the broker confirms the copy; if the copy is lost, or there is no queue yet
+    // to route it to, the original is nacked and requeued
+    private Uni<Void> republish(Message<byte[]> message, String routingKey, int retryCount, Throwable failure) {
+        return topology()
+                .onItem().transformToUni(ignored -> publishCopy(message, routingKey, retryCount, failure))
+                .onItem().transformToUni(ignored -> Uni.createFrom().completionStage(message.ack()))
+                .onFailure().recoverWithUni(publishFailure -> {
+                    LOG.errorf(publishFailure, "Failed to republish message to %s, requeueing it", routingKey);
+                    return Uni.createFrom().completionStage(message.nack(publishFailure));
+                });
+    }
+
+    private Uni<Void> publishCopy(Message<byte[]> message, String routingKey, int retryCount, Throwable failure) {
+        IncomingRabbitMQMetadata incoming = message.getMetadata(IncomingRabbitMQMetadata.class).orElse(null);
+        Map<String, Object> headers = new HashMap<>(incoming != null ? incoming.getHeaders() : Map.of());
+        headers.put(RETRY_COUNT_HEADER, retryCount);
+        headers.put(LAST_ERROR_HEADER, String.valueOf(failure.getMessage()));
+
+        OutgoingRabbitMQMetadata.Builder metadata = OutgoingRabbitMQMetadata.builder()
+                .withRoutingKey(routingKey)
+                .withHeaders(headers)
+                .withDeliveryMode(2);
+        if (incoming != null) {
+            incoming.getContentType().ifPresent(metadata::withContentType);
+            incoming.getMessageId().ifPresent(metadata::withMessageId);
+        }
+
+        CompletableFuture<Void> confirmed = new CompletableFuture<>();
+        retryEmitter.send(Message.of(message.getPayload())
+                .addMetadata(metadata.build())
+                .withAck(() -> {
+                    confirmed.complete(null);
+                    return CompletableFuture.completedFuture(null);
+                })
+                .withNack(nackFailure -> {
+                    confirmed.completeExceptionally(nackFailure);
+                    return CompletableFuture.completedFuture(null);
+                }));
+
+        return Uni.createFrom().completionStage(confirmed);
+    }
+
+    private static int retryCount(Message<byte[]> message) {
+        return message.getMetadata(IncomingRabbitMQMetadata.class)
+                .map(metadata -> metadata.getHeaders().get(RETRY_COUNT_HEADER))
+                .filter(Number.class::isInstance)
+                .map(value -> ((Number) value).intValue())
+                .orElse(0);
+    }
+
+    private static String delayQueue(String queue, int attempt) {
+        return queue + ".retry-" + attempt;
+    }
+
+    private static String parkingLot(String queue) {
+        return queue + ".parking-lot";
+    }
+}
@@ -0,0 +1,25 @@
+package models;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// attempted is false when the send never happened, so the claim's attempt is given back
+public record DeliveryOutcome(UUID id, NotificationStatus status, LocalDateTime sentAt,
+                              LocalDateTime nextAttemptAt, String lastError, boolean attempted) {
+
+    public static DeliveryOutcome sent(UUID id) {
+        return new DeliveryOutcome(id, NotificationStatus.SENT, LocalDateTime.now(), null, null, true);
+    }
+
+    public static DeliveryOutcome retry(UUID id, LocalDateTime nextAttemptAt, String error) {
+        return new DeliveryOutcome(id, NotificationStatus.PENDING, null, nextAttemptAt, error, true);
+    }
+
+    public static DeliveryOutcome deferred(UUID id, LocalDateTime nextAttemptAt) {
+        return new DeliveryOutcome(id, NotificationStatus.PENDING, null, nextAttemptAt, null, false);
+    }
+
+    public static DeliveryOutcome failed(UUID id, String error) {
+        return new DeliveryOutcome(id, NotificationStatus.FAILED, null, null, error, true);
+    }
+}
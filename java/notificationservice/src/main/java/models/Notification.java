@@ -2,8 +2,15 @@ package models;
 
 import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
 import jakarta.persistence.*;
+import org.hibernate.Session;
 
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
 @Entity
@@ -11,7 +18,7 @@ import java.util.UUID;
 public class Notification extends PanacheEntityBase {
 
     @Id
-    @GeneratedValue
+    @TimeOrderedUuid
     @Column(columnDefinition = "uuid", updatable = false, nullable = false)
     public UUID id;
 
@@ -34,8 +41,118 @@ public class Notification extends PanacheEntityBase {
     @Enumerated(EnumType.STRING)
     public NotificationStatus status = NotificationStatus.PENDING;
 
+    @Column(nullable = false)
+    @Enumerated(EnumType.STRING)
+    public NotificationPriority priority = NotificationPriority.NORMAL;
+
     @Column(nullable = false)
     public LocalDateTime createdAt = LocalDateTime.now();
 
     public LocalDateTime sentAt;
+
+    @Column(nullable = false)
+    public int attempts;
+
+    @Column(nullable = false)
+    public LocalDateTime nextAttemptAt = createdAt;
+
+    @Column(columnDefinition = "TEXT")
+    public String lastError;
+
+    @Column(columnDefinition = "uuid")
+    public UUID digestId;
+
+    public static Notification email(UUID userId, String recipient, String subject, String body) {
+        Notification notification = new Notification();
+        notification.userId = userId;
+        notification.type = NotificationType.EMAIL;
+        notification.recipient = recipient;
+        notification.subject = subject;
+        notification.body = body;
+        return notification;
+    }
+
+    // Merged notifications report the delivery state of the digest that carries them
+    public static List<NotificationState> findStates(Collection<UUID> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return getEntityManager().createQuery("""
+                        select new models.NotificationState(n.id, coalesce(d.status, n.status),
+                            coalesce(d.attempts, n.attempts), coalesce(d.sentAt, n.sentAt), coalesce(d.lastError, n.lastError))
+                        from Notification n left join Notification d on d.id = n.digestId
+                        where n.id in :ids
+                        """, NotificationState.class)
+                .setParameter("ids", ids)
+                .getResultList();
+    }
+
+    public static List<Notification> lockCoalescing(Collection<UUID> ids) {
+        return getEntityManager().createQuery(
+                        "select n from Notification n where n.id in :ids and n.status = :status order by n.createdAt",
+                        Notification.class)
+                .setParameter("ids", ids)
+                .setParameter("status", NotificationStatus.COALESCING)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList();
+    }
+
+    // SKIP LOCKED lets every replica claim a disjoint batch; pushing nextAttemptAt out by the lease keeps the rows
+    // claimed after commit, so no lock is held while mail is sent and a crashed worker's rows come back on their own
+    @SuppressWarnings("unchecked")
+    public static List<Notification> claimDue(NotificationPriority priority, int limit, Duration lease) {
+        LocalDateTime now = LocalDateTime.now();
+        return getEntityManager().createNativeQuery("""
+                        UPDATE notifications SET nextAttemptAt = :leaseUntil, attempts = attempts + 1
+                        WHERE id IN (
+                            SELECT id FROM notifications
+                            WHERE status = 'PENDING' AND priority = :priority AND nextAttemptAt <= :now
+                            ORDER BY nextAttemptAt
+                            LIMIT :limit
+                            FOR UPDATE SKIP LOCKED)
+                        RETURNING *
+                        """, Notification.class)
+                .setParameter("priority", priority.name())
+                .setParameter("leaseUntil", now.plus(lease))
+                .setParameter("now", now)
+                .setParameter("limit", limit)
+                .getResultList();
+    }
+
+    public static void recordOutcomes(List<DeliveryOutcome> outcomes) {
+        if (outcomes.isEmpty()) {
+            return;
+        }
+        getEntityManager().unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement("""
+                    UPDATE notifications
+                    SET status = ?, sentAt = ?, nextAttemptAt = COALESCE(?, nextAttemptAt),
+                        lastError = COALESCE(?, lastError), attempts = attempts - ?
+                    WHERE id = ?
+                    """)) {
+                for (DeliveryOutcome outcome : outcomes) {
+                    bindOutcome(statement, outcome);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        });
+    }
+
+    static void bindOutcome(PreparedStatement statement, DeliveryOutcome outcome) throws SQLException {
+        statement.setString(1, outcome.status().name());
+        statement.setObject(2, outcome.sentAt(), Types.TIMESTAMP);
+        statement.setObject(3, outcome.nextAttemptAt(), Types.TIMESTAMP);
+        statement.setString(4, outcome.lastError());
+        statement.setInt(5, outcome.attempted() ? 0 : 1);
+        statement.setObject(6, outcome.id());
+    }
+
+    // Pending count and the creation time of the oldest pending row
+    public static Object[] pendingStats() {
+        return getEntityManager()
+                .createQuery("select count(n), min(n.createdAt) from Notification n where n.status = :status", Object[].class)
+                .setParameter("status", NotificationStatus.PENDING)
+                .getSingleResult();
+    }
 }
@@ -0,0 +1,6 @@
+package models;
+
+// Declared from most to least urgent
+public enum NotificationPriority {
+    CRITICAL, NORMAL, BULK
+}
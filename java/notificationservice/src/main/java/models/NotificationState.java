@@ -0,0 +1,7 @@
+package models;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// Delivery state of a notification without its body
+public record NotificationState(UUID id, NotificationStatus status, int attempts, LocalDateTime sentAt, String lastError) {}
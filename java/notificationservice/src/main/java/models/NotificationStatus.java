@@ -1,5 +1,6 @@
 package models;
 
 public enum NotificationStatus {
-    PENDING, SENT, FAILED
-}
\ No newline at end of file
+    // COALESCING waits for its user's digest window; MERGED was delivered as part of the digest in digestId
+    PENDING, SENT, FAILED, COALESCING, MERGED
+}
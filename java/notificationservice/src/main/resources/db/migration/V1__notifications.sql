@@ -0,0 +1,18 @@
+CREATE TABLE IF NOT EXISTS notifications (
+    id            uuid         NOT NULL,
+    userId        uuid         NOT NULL,
+    type          varchar(255) NOT NULL,
+    recipient     varchar(255) NOT NULL,
+    subject       varchar(255) NOT NULL,
+    body          text,
+    status        varchar(255) NOT NULL,
+    createdAt     timestamp(6) NOT NULL,
+    sentAt        timestamp(6),
+    attempts      integer      NOT NULL DEFAULT 0,
+    nextAttemptAt timestamp(6) NOT NULL,
+    lastError     text,
+    PRIMARY KEY (id)
+);
+
+-- Workers only ever scan due PENDING rows, so the index stays as small as the backlog
+CREATE INDEX IF NOT EXISTS notifications_pending_idx ON notifications (nextAttemptAt) WHERE status = 'PENDING';
@@ -0,0 +1,8 @@
+-- Keys of messages that already produced a notification; rows older than notifications.dedup.ttl are purged
+CREATE TABLE IF NOT EXISTS processed_messages (
+    messageKey  varchar(255) NOT NULL,
+    processedAt timestamp(6) NOT NULL,
+    PRIMARY KEY (messageKey)
+);
+
+CREATE INDEX IF NOT EXISTS processed_messages_processed_at_idx ON processed_messages (processedAt);
@@ -0,0 +1,4 @@
+-- Notifications merged into a digest point at the digest that delivers them
+ALTER TABLE notifications ADD COLUMN IF NOT EXISTS digestId uuid;
+
+CREATE INDEX IF NOT EXISTS notifications_coalescing_idx ON notifications (createdAt) WHERE status = 'COALESCING';
@@ -0,0 +1,5 @@
+ALTER TABLE notifications ADD COLUMN IF NOT EXISTS priority varchar(255) NOT NULL DEFAULT 'NORMAL';
+
+-- Each lane claims its own due rows, so the pending index leads with the priority
+DROP INDEX IF EXISTS notifications_pending_idx;
+CREATE INDEX IF NOT EXISTS notifications_pending_priority_idx ON notifications (priority, nextAttemptAt) WHERE status = 'PENDING';
@@ -0,0 +1,94 @@
+package dedup;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// processed_messages lives in a map; the fake upsert applies the statement's conflict rule to the parameters
+// markProcessed binds, so what is checked here is the TTL cutoff it claims against
+class MessageDeduplicatorTest {
+
+    private static final Duration TTL = Duration.ofDays(30);
+
+    private final Map<String, LocalDateTime> processedMessages = new HashMap<>();
+    private MessageDeduplicator deduplicator;
+
+    @BeforeEach
+    void setUp() {
+        deduplicator = new MessageDeduplicator();
+        deduplicator.entityManager = entityManager();
+        deduplicator.ttl = TTL;
+        deduplicator.expectedKeys = 1_000;
+        deduplicator.falsePositiveRate = 0.01;
+        deduplicator.generations = 4;
+        deduplicator.init();
+    }
+
+    @Test
+    void claimsAKeyOnlyOnceWithinTheTtl() {
+        assertTrue(deduplicator.markProcessed("welcome:1"));
+        assertFalse(deduplicator.markProcessed("welcome:1"));
+        assertTrue(deduplicator.markProcessed("welcome:2"));
+    }
+
+    // A row left behind by the purge is reclaimed by the next claim instead of blocking the key for good
+    @Test
+    void reclaimsAKeyWhoseMarkHasExpired() {
+        processedMessages.put("welcome:1", LocalDateTime.now().minus(TTL).minusMinutes(1));
+
+        assertTrue(deduplicator.markProcessed("welcome:1"));
+        assertTrue(processedMessages.get("welcome:1").isAfter(LocalDateTime.now().minusMinutes(1)));
+        assertFalse(deduplicator.markProcessed("welcome:1"));
+    }
+
+    @Test
+    void keepsAMarkThatIsJustInsideTheTtl() {
+        LocalDateTime processedAt = LocalDateTime.now().minus(TTL).plusMinutes(1);
+        processedMessages.put("welcome:1", processedAt);
+
+        assertFalse(deduplicator.markProcessed("welcome:1"));
+        assertEquals(processedAt, processedMessages.get("welcome:1"));
+    }
+
+    private EntityManager entityManager() {
+        return (EntityManager) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{EntityManager.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("createNativeQuery") && ((String) args[0]).contains("ON CONFLICT")) {
+                        return upsert();
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private Query upsert() {
+        Map<String, Object> parameters = new HashMap<>();
+        return (Query) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Query.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "setParameter" -> {
+                        parameters.put((String) args[0], args[1]);
+                        yield proxy;
+                    }
+                    case "executeUpdate" -> {
+                        String key = (String) parameters.get("key");
+                        LocalDateTime processedAt = processedMessages.get(key);
+                        if (processedAt != null && !processedAt.isBefore((LocalDateTime) parameters.get("cutoff"))) {
+                            yield 0;
+                        }
+                        processedMessages.put(key, (LocalDateTime) parameters.get("now"));
+                        yield 1;
+                    }
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
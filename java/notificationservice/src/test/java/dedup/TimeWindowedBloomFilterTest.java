@@ -0,0 +1,166 @@
+package dedup;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimeWindowedBloomFilterTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    private final AtomicLong now = new AtomicLong(0);
+
+    // Four generations of one second each
+    private TimeWindowedBloomFilter filter(long expectedKeys, double falsePositiveRate) {
+        return new TimeWindowedBloomFilter(expectedKeys, falsePositiveRate, 4, Duration.ofSeconds(4), now::get);
+    }
+
+    @Test
+    void remembersAKeyUntilItsGenerationIsWiped() {
+        TimeWindowedBloomFilter filter = filter(1_000, 0.0001);
+        filter.put("early");
+        now.set(SECOND * 9 / 10);
+        filter.put("late");
+
+        now.set(4 * SECOND - 1);
+        assertTrue(filter.mightContain("early"));
+        assertTrue(filter.mightContain("late"));
+
+        // Both shared the first generation, so both go with it: the late one after only (generations - 1) / generations
+        now.set(4 * SECOND);
+        assertFalse(filter.mightContain("early"));
+        assertFalse(filter.mightContain("late"));
+    }
+
+    @Test
+    void newKeysGoIntoTheNewestGeneration() {
+        TimeWindowedBloomFilter filter = filter(1_000, 0.0001);
+        filter.put("first");
+        now.set(SECOND);
+        filter.put("second");
+
+        now.set(4 * SECOND);
+        assertFalse(filter.mightContain("first"));
+        assertTrue(filter.mightContain("second"));
+
+        now.set(5 * SECOND);
+        assertFalse(filter.mightContain("second"));
+    }
+
+    // An idle filter wipes every generation once and picks up the rotation schedule where it would have been
+    @Test
+    void catchesUpAfterALongIdleSpell() {
+        TimeWindowedBloomFilter filter = filter(1_000, 0.0001);
+        filter.put("before");
+
+        now.set(100 * SECOND + SECOND / 2);
+        assertFalse(filter.mightContain("before"));
+        filter.put("after");
+
+        now.set(103 * SECOND + SECOND * 9 / 10);
+        assertTrue(filter.mightContain("after"));
+        now.set(104 * SECOND);
+        assertFalse(filter.mightContain("after"));
+    }
+
+    // Every generation is full and a lookup checks them all, yet the filter as a whole stays at the configured rate
+    @Test
+    void keepsTheConfiguredFalsePositiveRateAcrossAllGenerations() {
+        TimeWindowedBloomFilter filter = filter(40_000, 0.01);
+        for (int generation = 0; generation < 4; generation++) {
+            now.set(generation * SECOND);
+            for (int i = 0; i < 10_000; i++) {
+                filter.put("key-" + generation + "-" + i);
+            }
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("unknown-" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 1_500, falsePositives + " false positives in 100000 lookups");
+    }
+
+    @Test
+    void concurrentPutsLoseNoBits() throws Exception {
+        TimeWindowedBloomFilter filter = filter(100_000, 0.0001);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int thread = t;
+                writers.add(executor.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        filter.put("key-" + thread + "-" + i);
+                    }
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        for (int t = 0; t < 8; t++) {
+            for (int i = 0; i < 10_000; i++) {
+                assertTrue(filter.mightContain("key-" + t + "-" + i), "key-" + t + "-" + i);
+            }
+        }
+    }
+
+    // Many threads see the same generation boundary at once; it must still rotate exactly once, or the
+    // generation holding the keys from two seconds ago would be wiped early
+    @Test
+    void concurrentCallersRotateOncePerGeneration() throws Exception {
+        TimeWindowedBloomFilter filter = filter(10_000, 0.0001);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            for (int second = 0; second < 50; second++) {
+                filter.put("key-" + second);
+                now.set((second + 1) * SECOND);
+
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<?>> callers = new ArrayList<>();
+                for (int t = 0; t < 8; t++) {
+                    int thread = t;
+                    callers.add(executor.submit(() -> {
+                        start.await();
+                        if (thread % 2 == 0) {
+                            filter.mightContain("probe");
+                        } else {
+                            filter.put("busy-" + thread);
+                        }
+                        return null;
+                    }));
+                }
+                start.countDown();
+                for (Future<?> caller : callers) {
+                    caller.get();
+                }
+
+                assertTrue(filter.mightContain("key-" + second), "key-" + second);
+                if (second >= 2) {
+                    assertTrue(filter.mightContain("key-" + (second - 2)), "key-" + (second - 2));
+                }
+                if (second >= 3) {
+                    assertFalse(filter.mightContain("key-" + (second - 3)), "key-" + (second - 3));
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
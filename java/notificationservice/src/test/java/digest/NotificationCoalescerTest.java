@@ -0,0 +1,123 @@
+package digest;
+
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import models.Notification;
+import models.NotificationPriority;
+import models.NotificationStatus;
+import models.NotificationType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NotificationCoalescerTest {
+
+    private static final UUID USER = UUID.randomUUID();
+
+    private final List<Synchronization> synchronizations = new ArrayList<>();
+    private NotificationCoalescer coalescer;
+
+    @BeforeEach
+    void setUp() {
+        coalescer = new NotificationCoalescer() {
+            @Override
+            String renderDigest(List<Notification> parts) {
+                return parts.size() + " parts";
+            }
+        };
+        coalescer.transactionRegistry = registry();
+        coalescer.window = Duration.ofMinutes(5);
+        coalescer.tick = Duration.ofSeconds(1);
+        coalescer.wheelSlots = 512;
+        coalescer.init();
+    }
+
+    @Test
+    void buffersANotificationOnlyOnceItsTransactionCommits() {
+        Notification committed = notification(NotificationPriority.NORMAL);
+        Notification rolledBack = notification(NotificationPriority.NORMAL);
+
+        coalescer.add(committed);
+        coalescer.add(rolledBack);
+        assertTrue(coalescer.buffers.isEmpty());
+
+        synchronizations.get(1).afterCompletion(Status.STATUS_ROLLEDBACK);
+        assertTrue(coalescer.buffers.isEmpty());
+
+        synchronizations.get(0).afterCompletion(Status.STATUS_COMMITTED);
+        assertEquals(Map.of(new NotificationCoalescer.DigestKey(USER, NotificationType.EMAIL), List.of(committed.id)),
+                coalescer.buffers);
+    }
+
+    @Test
+    void releasesASinglePartWindowAsIs() {
+        Notification single = notification(NotificationPriority.BULK);
+        LocalDateTime now = LocalDateTime.now();
+
+        assertNull(coalescer.digestOf(List.of(single), now));
+
+        assertEquals(NotificationStatus.PENDING, single.status);
+        assertEquals(now, single.nextAttemptAt);
+        assertNull(single.digestId);
+    }
+
+    @Test
+    void digestIsAsUrgentAsItsMostUrgentPart() {
+        List<Notification> parts = List.of(
+                notification(NotificationPriority.BULK),
+                notification(NotificationPriority.CRITICAL),
+                notification(NotificationPriority.NORMAL));
+        parts.get(2).recipient = "new-address@example.com";
+
+        Notification digest = coalescer.digestOf(parts, LocalDateTime.now());
+
+        assertEquals(NotificationPriority.CRITICAL, digest.priority);
+        assertEquals(NotificationStatus.PENDING, digest.status);
+        assertEquals(USER, digest.userId);
+        // The latest part has the most recent address
+        assertEquals("new-address@example.com", digest.recipient);
+        assertEquals("Your Orderly updates (3)", digest.subject);
+        assertEquals("3 parts", digest.body);
+    }
+
+    @Test
+    void digestOfBulkPartsStaysBulk() {
+        Notification digest = coalescer.digestOf(List.of(
+                notification(NotificationPriority.BULK),
+                notification(NotificationPriority.BULK)), LocalDateTime.now());
+
+        assertEquals(NotificationPriority.BULK, digest.priority);
+    }
+
+    private TransactionSynchronizationRegistry registry() {
+        return (TransactionSynchronizationRegistry) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{TransactionSynchronizationRegistry.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("registerInterposedSynchronization")) {
+                        synchronizations.add((Synchronization) args[0]);
+                        return null;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private static Notification notification(NotificationPriority priority) {
+        Notification notification = Notification.email(USER, "user@example.com", "Update", "<p>Update</p>");
+        notification.id = UUID.randomUUID();
+        notification.priority = priority;
+        notification.status = NotificationStatus.COALESCING;
+        return notification;
+    }
+}
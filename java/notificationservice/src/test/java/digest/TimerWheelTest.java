@@ -0,0 +1,66 @@
+package digest;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Deadlines sit half a tick off the boundaries, so the few microseconds between building the wheel and
+// reading the clock here never move one into another tick
+class TimerWheelTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    private final TimerWheel<String> wheel = new TimerWheel<>(Duration.ofSeconds(1), 8);
+    private final long start = System.nanoTime();
+
+    @Test
+    void expiresAKeyOnTheTickOfItsDeadline() {
+        wheel.schedule("a", at(2.5));
+
+        assertEquals(List.of(), wheel.advance(at(2.9)));
+        assertEquals(List.of("a"), wheel.advance(at(3.1)));
+        assertEquals(List.of(), wheel.advance(at(4.1)));
+    }
+
+    // Eight slots of a second each: these deadlines share a slot with earlier ones, and stay put until their own turn
+    @Test
+    void keepsDeadlinesMoreThanOneTurnOutUntilTheirTurn() {
+        wheel.schedule("first turn", at(1.5));
+        wheel.schedule("second turn", at(9.5));
+        wheel.schedule("third turn", at(17.5));
+
+        assertEquals(List.of("first turn"), wheel.advance(at(2.1)));
+        assertEquals(List.of(), wheel.advance(at(9.9)));
+        assertEquals(List.of("second turn"), wheel.advance(at(10.1)));
+        assertEquals(List.of(), wheel.advance(at(17.9)));
+        assertEquals(List.of("third turn"), wheel.advance(at(18.1)));
+    }
+
+    // A long pause between advances, e.g. a stalled scheduler, still releases everything that came due meanwhile
+    // and nothing that did not
+    @Test
+    void catchesUpAfterALongGap() {
+        wheel.schedule("a", at(0.5));
+        wheel.schedule("b", at(6.5));
+        wheel.schedule("c", at(13.5));
+        wheel.schedule("d", at(30.5));
+
+        assertEquals(List.of("a", "b", "c"), wheel.advance(at(25.5)));
+        assertEquals(List.of("d"), wheel.advance(at(31.5)));
+    }
+
+    @Test
+    void firesADeadlineAlreadyPassedOnTheNextTick() {
+        wheel.advance(at(5.5));
+        wheel.schedule("late", at(1.5));
+
+        assertEquals(List.of("late"), wheel.advance(at(6.1)));
+    }
+
+    private long at(double seconds) {
+        return start + (long) (seconds * SECOND);
+    }
+}
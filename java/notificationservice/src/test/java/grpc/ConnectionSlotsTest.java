@@ -0,0 +1,94 @@
+package grpc;
+
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.subscription.UniEmitter;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConnectionSlotsTest {
+
+    @Test
+    void queuesTasksPastTheLimitAndStartsThemAsSlotsFree() {
+        ConnectionSlots slots = new ConnectionSlots(2);
+        List<UniEmitter<? super String>> running = new ArrayList<>();
+        List<String> results = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+
+        for (int i = 0; i < 3; i++) {
+            slots.withSlot(() -> Uni.createFrom().<String>emitter(running::add))
+                    .subscribe().with(results::add, failures::add);
+        }
+        assertEquals(2, running.size());
+        assertEquals(0, slots.available());
+
+        running.get(0).complete("first");
+        assertEquals(3, running.size());
+        assertEquals(List.of("first"), results);
+
+        running.get(1).fail(new IllegalStateException("smtp down"));
+        running.get(2).complete("third");
+        assertEquals(List.of("first", "third"), results);
+        assertEquals("smtp down", failures.get(0).getMessage());
+        assertEquals(2, slots.available());
+    }
+
+    @Test
+    void releasesTheSlotWhenTheTaskFailsOrThrows() {
+        ConnectionSlots slots = new ConnectionSlots(1);
+        AtomicInteger failures = new AtomicInteger();
+
+        slots.withSlot(() -> Uni.createFrom().failure(new IllegalStateException("rejected")))
+                .subscribe().with(item -> {}, failure -> failures.incrementAndGet());
+        slots.withSlot(() -> {
+            throw new IllegalStateException("bad mail");
+        }).subscribe().with(item -> {}, failure -> failures.incrementAndGet());
+
+        assertEquals(2, failures.get());
+        assertEquals(1, slots.available());
+    }
+
+    // Many threads submit tasks that complete on other threads; no more than the limit may ever run at once,
+    // and every task must eventually run even when submits race with releases
+    @Test
+    void neverRunsMoreThanTheLimitUnderConcurrentUse() throws InterruptedException {
+        int limit = 4;
+        int tasks = 20_000;
+        ConnectionSlots slots = new ConnectionSlots(limit);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(tasks);
+        Queue<Throwable> errors = new ConcurrentLinkedQueue<>();
+        ExecutorService completers = Executors.newFixedThreadPool(4);
+        ExecutorService submitters = Executors.newFixedThreadPool(4);
+
+        for (int i = 0; i < tasks; i++) {
+            submitters.execute(() -> slots.withSlot(() -> Uni.createFrom().<Void>emitter(emitter -> {
+                        peak.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                        completers.execute(() -> {
+                            inFlight.decrementAndGet();
+                            emitter.complete(null);
+                        });
+                    }))
+                    .subscribe().with(ignored -> done.countDown(), errors::add));
+        }
+
+        assertTrue(done.await(30, TimeUnit.SECONDS), () -> done.getCount() + " tasks never ran");
+        submitters.shutdown();
+        completers.shutdown();
+        assertTrue(errors.isEmpty(), errors::toString);
+        assertTrue(peak.get() <= limit, () -> "peak " + peak.get() + " above " + limit);
+        assertEquals(limit, slots.available());
+    }
+}
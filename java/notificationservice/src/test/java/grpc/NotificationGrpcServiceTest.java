@@ -0,0 +1,240 @@
+package grpc;
+
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.smallrye.mutiny.Multi;
+import models.Notification;
+import models.NotificationState;
+import models.NotificationStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.vladyslavplus.notificationservice.DeliveryStatus;
+import org.vladyslavplus.notificationservice.NotificationAcceptance;
+import org.vladyslavplus.notificationservice.NotificationRequest;
+import org.vladyslavplus.notificationservice.NotificationStatusRequest;
+import org.vladyslavplus.notificationservice.NotificationStatusUpdate;
+import org.vladyslavplus.notificationservice.NotificationType;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NotificationGrpcServiceTest {
+
+    private static final String USER = UUID.randomUUID().toString();
+
+    private NotificationGrpcService service;
+    private final AtomicInteger enqueued = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        service = new NotificationGrpcService();
+        service.maxStatusIds = 3;
+        service.batchSize = 4;
+        service.batchWindow = Duration.ofMillis(20);
+        service.maxPendingBatches = 64;
+        service.watchInterval = Duration.ofMillis(1);
+        service.watchTimeout = Duration.ofSeconds(10);
+    }
+
+    @Test
+    void parsesIdsInRequestOrderWithoutDuplicates() {
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+
+        assertEquals(List.of(b, a), service.parseIds(request(b.toString(), a.toString(), b.toString())));
+    }
+
+    @Test
+    void rejectsMalformedIdsAsInvalidArgument() {
+        StatusRuntimeException e = assertThrows(StatusRuntimeException.class,
+                () -> service.parseIds(request(UUID.randomUUID().toString(), "not-a-uuid")));
+
+        assertEquals(Status.Code.INVALID_ARGUMENT, e.getStatus().getCode());
+        assertEquals("Invalid notification id: not-a-uuid", e.getStatus().getDescription());
+    }
+
+    @Test
+    void rejectsTooManyIdsAsInvalidArgument() {
+        StatusRuntimeException e = assertThrows(StatusRuntimeException.class,
+                () -> service.parseIds(request("a", "b", "c", "d")));
+
+        assertEquals(Status.Code.INVALID_ARGUMENT, e.getStatus().getCode());
+    }
+
+    @Test
+    void answersEveryRequestInOrderAndRejectsOnlyTheInvalidOnes() {
+        service.notificationSender = sender(Duration.ZERO, false);
+
+        List<NotificationAcceptance> acceptances = service.sendNotifications(Multi.createFrom().items(
+                        email(USER), email("not-a-user"), email(USER),
+                        NotificationRequest.newBuilder(email(USER)).setType(NotificationType.SMS).build(),
+                        email(USER), NotificationRequest.newBuilder(email(USER)).setRecipient(" ").build()))
+                .collect().asList()
+                .await().atMost(Duration.ofSeconds(10));
+
+        assertEquals(List.of(0L, 1L, 2L, 3L, 4L, 5L), acceptances.stream().map(NotificationAcceptance::getSequence).toList());
+        assertEquals(List.of(true, false, true, false, true, false),
+                acceptances.stream().map(NotificationAcceptance::getAccepted).toList());
+        assertEquals("Invalid userId: not-a-user", acceptances.get(1).getError());
+        assertEquals("Recipient is required", acceptances.get(5).getError());
+        assertFalse(acceptances.get(0).getNotificationId().isEmpty());
+        assertEquals(3, enqueued.get());
+    }
+
+    @Test
+    void aFailedInsertRejectsTheValidRequestsOfItsBatch() {
+        service.notificationSender = sender(Duration.ZERO, true);
+
+        List<NotificationAcceptance> acceptances = service.sendNotifications(Multi.createFrom().items(
+                        email(USER), email("not-a-user")))
+                .collect().asList()
+                .await().atMost(Duration.ofSeconds(10));
+
+        assertEquals(2, acceptances.size());
+        assertFalse(acceptances.get(0).getAccepted());
+        assertEquals("Failed to queue notification: database down", acceptances.get(0).getError());
+        assertEquals("Invalid userId: not-a-user", acceptances.get(1).getError());
+    }
+
+    // A client streaming faster than the inserts: the window timer keeps closing batches while the worker is busy,
+    // and they have to wait for it rather than fail the stream
+    @Test
+    void slowInsertsDoNotFailAFastStream() {
+        service.notificationSender = sender(Duration.ofMillis(4), false);
+        service.batchSize = 200;
+        service.batchWindow = Duration.ofMillis(2);
+        service.maxPendingBatches = 1_000;
+
+        Multi<NotificationRequest> requests = Multi.createFrom().ticks().every(Duration.ofMillis(1))
+                .onOverflow().buffer()
+                .select().first(1_000)
+                .map(i -> email(USER));
+
+        List<NotificationAcceptance> acceptances = service.sendNotifications(requests)
+                .collect().asList()
+                .await().atMost(Duration.ofSeconds(30));
+
+        assertEquals(LongStream.range(0, 1_000).boxed().toList(),
+                acceptances.stream().map(NotificationAcceptance::getSequence).toList());
+        assertTrue(acceptances.stream().allMatch(NotificationAcceptance::getAccepted));
+    }
+
+    @Test
+    void watchEmitsEachChangeOnceAndCompletesWhenNothingIsPending() {
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+        UUID missing = UUID.randomUUID();
+        LocalDateTime sentAt = LocalDateTime.now();
+        Queue<List<UUID>> reads = new ConcurrentLinkedQueue<>();
+        List<Map<UUID, NotificationState>> polls = List.of(
+                Map.of(a, state(a, NotificationStatus.PENDING, 1, null, null),
+                        b, state(b, NotificationStatus.COALESCING, 0, null, null)),
+                Map.of(a, state(a, NotificationStatus.PENDING, 1, null, null),
+                        b, state(b, NotificationStatus.COALESCING, 0, null, null)),
+                Map.of(a, state(a, NotificationStatus.SENT, 1, sentAt, null),
+                        b, state(b, NotificationStatus.MERGED, 0, null, null)),
+                Map.of(b, state(b, NotificationStatus.FAILED, 6, null, "mailbox unavailable")));
+        service = new NotificationGrpcService() {
+            @Override
+            Map<UUID, NotificationState> findStates(List<UUID> ids) {
+                reads.add(ids);
+                Map<UUID, NotificationState> states = new HashMap<>(polls.get(Math.min(reads.size(), polls.size()) - 1));
+                states.keySet().retainAll(ids);
+                return states;
+            }
+        };
+        service.maxStatusIds = 3;
+        service.watchInterval = Duration.ofMillis(1);
+        service.watchTimeout = Duration.ofSeconds(10);
+
+        List<NotificationStatusUpdate> updates = service.watchNotificationStatuses(
+                        request(a.toString(), b.toString(), missing.toString()))
+                .collect().asList()
+                .await().atMost(Duration.ofSeconds(10));
+
+        assertEquals(List.of(
+                        a + " " + DeliveryStatus.DELIVERY_STATUS_PENDING,
+                        b + " " + DeliveryStatus.DELIVERY_STATUS_PENDING,
+                        missing + " " + DeliveryStatus.DELIVERY_STATUS_UNKNOWN,
+                        a + " " + DeliveryStatus.DELIVERY_STATUS_SENT,
+                        b + " " + DeliveryStatus.DELIVERY_STATUS_FAILED),
+                updates.stream().map(update -> update.getNotificationId() + " " + update.getStatus()).toList());
+        assertTrue(updates.get(3).hasSentAt());
+        assertEquals("mailbox unavailable", updates.get(4).getLastError());
+        // Unknown and finished notifications are not read again
+        assertEquals(List.of(List.of(a, b, missing), List.of(a, b), List.of(a, b), List.of(b)), new ArrayList<>(reads));
+    }
+
+    @Test
+    void watchStopsAtTheTimeoutWhileStillPending() {
+        UUID a = UUID.randomUUID();
+        service = new NotificationGrpcService() {
+            @Override
+            Map<UUID, NotificationState> findStates(List<UUID> ids) {
+                return Map.of(a, state(a, NotificationStatus.PENDING, 1, null, null));
+            }
+        };
+        service.maxStatusIds = 3;
+        service.watchInterval = Duration.ofMillis(5);
+        service.watchTimeout = Duration.ofMillis(100);
+
+        List<NotificationStatusUpdate> updates = service.watchNotificationStatuses(request(a.toString()))
+                .collect().asList()
+                .await().atMost(Duration.ofSeconds(10));
+
+        assertEquals(1, updates.size());
+        assertEquals(DeliveryStatus.DELIVERY_STATUS_PENDING, updates.get(0).getStatus());
+    }
+
+    private NotificationSender sender(Duration insertTime, boolean fail) {
+        return new NotificationSender() {
+            @Override
+            public void enqueueAll(List<Notification> notifications) {
+                try {
+                    Thread.sleep(insertTime.toMillis());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if (fail) {
+                    throw new IllegalStateException("database down");
+                }
+                for (Notification notification : notifications) {
+                    notification.id = UUID.randomUUID();
+                }
+                enqueued.addAndGet(notifications.size());
+            }
+        };
+    }
+
+    private static NotificationState state(UUID id, NotificationStatus status, int attempts, LocalDateTime sentAt, String lastError) {
+        return new NotificationState(id, status, attempts, sentAt, lastError);
+    }
+
+    private static NotificationRequest email(String userId) {
+        return NotificationRequest.newBuilder()
+                .setUserId(userId)
+                .setRecipient("user@example.com")
+                .setSubject("Hi")
+                .setBody("<p>Hi</p>")
+                .setType(NotificationType.EMAIL)
+                .build();
+    }
+
+    private static NotificationStatusRequest request(String... ids) {
+        return NotificationStatusRequest.newBuilder().addAllNotificationIds(List.of(ids)).build();
+    }
+}
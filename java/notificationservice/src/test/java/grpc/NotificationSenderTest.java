@@ -0,0 +1,109 @@
+package grpc;
+
+import io.smallrye.mutiny.Uni;
+import models.Notification;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NotificationSenderTest {
+
+    private static final int POOL_SIZE = 8;
+
+    private final ScheduledExecutorService smtp = Executors.newScheduledThreadPool(4);
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peak = new AtomicInteger();
+    private final Queue<String> delivered = new ConcurrentLinkedQueue<>();
+    private NotificationSender sender;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        sender = new NotificationSender();
+        sender.maxConnections = POOL_SIZE;
+        sender.domainRate = 1_000;
+        sender.domainBurst = 1_000;
+        sender.maxDomains = 100;
+        // Each send holds its "connection" for a millisecond, like a fast relay
+        sender.reactiveMailer = mails -> Uni.createFrom().emitter(emitter -> {
+            peak.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            smtp.schedule(() -> {
+                inFlight.decrementAndGet();
+                delivered.add(mails[0].getTo().get(0));
+                emitter.complete(null);
+            }, 1, TimeUnit.MILLISECONDS);
+        });
+        sender.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        smtp.shutdownNow();
+    }
+
+    // The delivery worker can have several batches in flight at once; together they must stay within the pool
+    @Test
+    void concurrentBatchesShareTheConnectionLimit() {
+        List<Notification> first = notifications(0, 40);
+        List<Notification> second = notifications(40, 40);
+
+        List<NotificationSender.SendResult> results = Uni.combine().all()
+                .unis(sender.sendAll(first).collect().asList(), sender.sendAll(second).collect().asList())
+                .with((a, b) -> Stream.concat(a.stream(), b.stream()).toList())
+                .await().atMost(Duration.ofSeconds(10));
+
+        assertEquals(80, results.size());
+        assertTrue(results.stream().allMatch(result -> result.failure() == null && result.deferredFor() == null));
+        assertEquals(80, delivered.size());
+        assertTrue(peak.get() <= POOL_SIZE, () -> "peak of " + peak.get() + " sends with a pool of " + POOL_SIZE);
+    }
+
+    @Test
+    void defersMailPastTheDomainRate() throws IOException {
+        sender.domainBurst = 2;
+        sender.domainRate = 0.001;
+        sender.init();
+
+        List<NotificationSender.SendResult> results = sender.sendAll(List.of(
+                        email("a@one.example"), email("b@one.example"), email("c@one.example")))
+                .collect().asList()
+                .await().atMost(Duration.ofSeconds(10));
+
+        assertEquals(3, results.size());
+        NotificationSender.SendResult last = results.get(0);
+        assertEquals("c@one.example", last.notification().recipient);
+        assertNotNull(last.deferredFor());
+        assertNull(results.get(1).deferredFor());
+        assertNull(results.get(2).deferredFor());
+    }
+
+    private static List<Notification> notifications(int from, int count) {
+        // Spread over several domains so the batch runs as parallel streams
+        return IntStream.range(from, from + count)
+                .mapToObj(i -> email("user" + i + "@domain" + (i % 10) + ".example"))
+                .toList();
+    }
+
+    private static Notification email(String recipient) {
+        Notification notification = Notification.email(UUID.randomUUID(), recipient, "Hello", "<p>Hello</p>");
+        notification.id = UUID.randomUUID();
+        return notification;
+    }
+}
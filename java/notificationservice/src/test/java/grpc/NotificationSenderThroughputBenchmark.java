@@ -0,0 +1,214 @@
+package grpc;
+
+import io.quarkus.mailer.Mail;
+import io.quarkus.mailer.reactive.ReactiveMailer;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.vertx.ext.mail.MailConfig;
+import io.vertx.ext.mail.MailMessage;
+import io.vertx.ext.mail.StartTLSOptions;
+import io.vertx.mutiny.core.Vertx;
+import io.vertx.mutiny.ext.mail.MailClient;
+import models.Notification;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Mails per second through NotificationSender and the Vert.x mail client the Quarkus mailer wraps, against an
+// in-process SMTP sink that takes a few milliseconds per message like a nearby relay. All batches are handed over
+// at once, the worst case for the delivery worker, and the sink records how many messages were ever in progress
+// together, which must stay within the pool.
+// Run with: ./mvnw test -Dtest=NotificationSenderThroughputBenchmark -Dbenchmark=true
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class NotificationSenderThroughputBenchmark {
+
+    private static final int POOL_SIZE = 8;
+    private static final int BATCHES = 40;
+    private static final int BATCH_SIZE = 50;
+    private static final long SINK_DELAY_MILLIS = 2;
+
+    @Test
+    void sendThroughput() throws IOException {
+        try (SmtpSink sink = new SmtpSink(SINK_DELAY_MILLIS)) {
+            Vertx vertx = Vertx.vertx();
+            try {
+                MailClient client = MailClient.create(vertx, new MailConfig()
+                        .setHostname("localhost")
+                        .setPort(sink.port())
+                        .setStarttls(StartTLSOptions.DISABLED)
+                        .setKeepAlive(true)
+                        .setMaxPoolSize(POOL_SIZE));
+                NotificationSender sender = sender(client);
+
+                send(sender, 0, 5);
+                sink.resetPeak();
+                int expected = sink.received() + BATCHES * BATCH_SIZE;
+
+                long start = System.nanoTime();
+                List<NotificationSender.SendResult> results = send(sender, 5, BATCHES);
+                long elapsed = System.nanoTime() - start;
+
+                System.out.printf("Sent %,d mails in %d ms: %,.0f mails/s, at most %d in progress at the sink%n",
+                        results.size(), elapsed / 1_000_000, results.size() * 1e9 / elapsed, sink.peak());
+                assertTrue(results.stream().allMatch(result -> result.failure() == null && result.deferredFor() == null));
+                assertEquals(expected, sink.received());
+                assertTrue(sink.peak() <= POOL_SIZE, () -> sink.peak() + " messages in progress with a pool of " + POOL_SIZE);
+            } finally {
+                vertx.closeAndAwait();
+            }
+        }
+    }
+
+    private static NotificationSender sender(MailClient client) throws IOException {
+        NotificationSender sender = new NotificationSender();
+        sender.maxConnections = POOL_SIZE;
+        sender.domainRate = 1e6;
+        sender.domainBurst = 1_000_000;
+        sender.maxDomains = 1_000;
+        // The part of the Quarkus mailer the sender relies on: one message per mail over the pooled client
+        sender.reactiveMailer = new ReactiveMailer() {
+            @Override
+            public Uni<Void> send(Mail... mails) {
+                return Multi.createFrom().items(mails)
+                        .onItem().transformToUniAndConcatenate(mail -> client.sendMail(new MailMessage()
+                                .setFrom("noreply@orderly.local")
+                                .setTo(mail.getTo())
+                                .setSubject(mail.getSubject())
+                                .setHtml(mail.getHtml())))
+                        .collect().last()
+                        .replaceWithVoid();
+            }
+        };
+        sender.init();
+        return sender;
+    }
+
+    private static List<NotificationSender.SendResult> send(NotificationSender sender, int firstBatch, int batches) {
+        List<Uni<List<NotificationSender.SendResult>>> inFlight = new ArrayList<>();
+        for (int batch = firstBatch; batch < firstBatch + batches; batch++) {
+            int from = batch * BATCH_SIZE;
+            List<Notification> notifications = IntStream.range(from, from + BATCH_SIZE)
+                    .mapToObj(i -> email("user" + i + "@domain" + (i % 20) + ".example"))
+                    .toList();
+            inFlight.add(sender.sendAll(notifications).collect().asList());
+        }
+        return Uni.join().all(inFlight).andFailFast()
+                .map(lists -> lists.stream().flatMap(List::stream).toList())
+                .await().atMost(Duration.ofMinutes(2));
+    }
+
+    private static Notification email(String recipient) {
+        Notification notification = Notification.email(UUID.randomUUID(), recipient, "Your order has shipped",
+                "<html><body><p>Your order is on its way.</p></body></html>");
+        notification.id = UUID.randomUUID();
+        return notification;
+    }
+
+    // Just enough SMTP for the Vert.x client: every command is accepted and message bodies are discarded
+    private static class SmtpSink implements AutoCloseable {
+
+        private final ServerSocket server = new ServerSocket(0);
+        private final ExecutorService sessions = Executors.newCachedThreadPool();
+        private final long delayMillis;
+        private final AtomicInteger received = new AtomicInteger();
+        private final AtomicInteger inProgress = new AtomicInteger();
+        private final AtomicInteger peak = new AtomicInteger();
+
+        SmtpSink(long delayMillis) throws IOException {
+            this.delayMillis = delayMillis;
+            sessions.execute(this::accept);
+        }
+
+        int port() {
+            return server.getLocalPort();
+        }
+
+        int received() {
+            return received.get();
+        }
+
+        int peak() {
+            return peak.get();
+        }
+
+        void resetPeak() {
+            peak.set(0);
+        }
+
+        private void accept() {
+            while (!server.isClosed()) {
+                try {
+                    Socket socket = server.accept();
+                    sessions.execute(() -> session(socket));
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private void session(Socket socket) {
+            try (socket;
+                 BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+                 PrintWriter out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.US_ASCII)) {
+                reply(out, "220 sink ESMTP");
+                String line;
+                while ((line = in.readLine()) != null) {
+                    String command = line.length() < 4 ? line : line.substring(0, 4).toUpperCase(Locale.ROOT);
+                    switch (command) {
+                        case "EHLO" -> reply(out, "250-sink\r\n250 8BITMIME");
+                        case "DATA" -> {
+                            peak.accumulateAndGet(inProgress.incrementAndGet(), Math::max);
+                            reply(out, "354 end with <CRLF>.<CRLF>");
+                            while ((line = in.readLine()) != null && !line.equals(".")) {
+                                // discard the message
+                            }
+                            Thread.sleep(delayMillis);
+                            inProgress.decrementAndGet();
+                            received.incrementAndGet();
+                            reply(out, "250 queued");
+                        }
+                        case "QUIT" -> {
+                            reply(out, "221 bye");
+                            return;
+                        }
+                        default -> reply(out, "250 OK");
+                    }
+                }
+            } catch (IOException e) {
+                // client went away
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private static void reply(PrintWriter out, String reply) {
+            out.print(reply + "\r\n");
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            server.close();
+            sessions.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package jobs;
+
+import grpc.NotificationSender;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import models.DeliveryOutcome;
+import models.Notification;
+import models.NotificationPriority;
+import models.NotificationStatus;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Claims come from in-memory queues instead of the database, so only the worker's own bookkeeping is tested
+class NotificationDeliveryWorkerTest {
+
+    private static final int MAX_CONCURRENCY = 16;
+
+    private final Map<NotificationPriority, Queue<Notification>> due = new EnumMap<>(NotificationPriority.class);
+    private final Map<NotificationPriority, Integer> claimed = new EnumMap<>(NotificationPriority.class);
+    private final Map<UUID, Notification> byId = new HashMap<>();
+    private final AtomicInteger sent = new AtomicInteger();
+
+    @Test
+    void claimsOnlyTheFreeSlotsSplitByWeight() {
+        NotificationDeliveryWorker worker = worker(hangingSender());
+        for (NotificationPriority priority : NotificationPriority.values()) {
+            due(priority, 1_000);
+        }
+
+        worker.poll();
+        assertEquals(Map.of(NotificationPriority.CRITICAL, 11, NotificationPriority.NORMAL, 4, NotificationPriority.BULK, 2), claimed);
+
+        // Every slot is busy and a row is already waiting, so the next poll claims nothing
+        worker.poll();
+        assertEquals(17, claimed.values().stream().mapToInt(Integer::intValue).sum());
+    }
+
+    @Test
+    void handsSharesWithNothingDueToTheBusyLanes() {
+        NotificationDeliveryWorker worker = worker(hangingSender());
+        due(NotificationPriority.BULK, 1_000);
+        due(NotificationPriority.NORMAL, 1);
+
+        worker.poll();
+
+        assertEquals(Map.of(NotificationPriority.CRITICAL, 0, NotificationPriority.NORMAL, 1, NotificationPriority.BULK, 16), claimed);
+    }
+
+    // With more due than fits in one round, the worker re-polls as the lanes run dry instead of waiting for the tick
+    @Test
+    void drainsABacklogWithoutWaitingForTheNextTick() throws InterruptedException {
+        NotificationDeliveryWorker worker = worker(completingSender());
+        due(NotificationPriority.BULK, 500);
+        due(NotificationPriority.CRITICAL, 100);
+
+        worker.poll();
+
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (sent.get() < 600 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(600, sent.get());
+        assertTrue(due.values().stream().allMatch(Queue::isEmpty));
+        assertEquals(600, worker.meterRegistry.find("notifications.lane.latency").timers().stream()
+                .mapToLong(timer -> timer.count()).sum());
+    }
+
+    @Test
+    void backsOffExponentiallyUpToTheCap() {
+        NotificationDeliveryWorker worker = worker(failingSender());
+        worker.maxBackoff = Duration.ofMinutes(5);
+        dueWithAttempts(NotificationPriority.NORMAL, 1, 2, 3, 4, 5);
+
+        LocalDateTime before = LocalDateTime.now();
+        worker.poll();
+        LocalDateTime after = LocalDateTime.now();
+
+        List<DeliveryOutcome> outcomes = drainOutcomes(worker);
+        assertEquals(5, outcomes.size());
+        for (DeliveryOutcome outcome : outcomes) {
+            int attempts = byId.get(outcome.id()).attempts;
+            Duration expected = Duration.ofSeconds(Math.min(30L << (attempts - 1), 300));
+            assertEquals(NotificationStatus.PENDING, outcome.status(), "attempt " + attempts);
+            assertTrue(outcome.attempted());
+            assertEquals("smtp down", outcome.lastError());
+            assertFalse(outcome.nextAttemptAt().isBefore(before.plus(expected)), "attempt " + attempts);
+            assertFalse(outcome.nextAttemptAt().isAfter(after.plus(expected)), "attempt " + attempts);
+        }
+    }
+
+    // The shift is capped too, so a large attempt count with a generous maxAttempts cannot overflow the backoff
+    @Test
+    void largeAttemptCountsStillBackOffByTheCap() {
+        NotificationDeliveryWorker worker = worker(failingSender());
+        worker.maxAttempts = 100;
+        dueWithAttempts(NotificationPriority.NORMAL, 64);
+
+        LocalDateTime before = LocalDateTime.now();
+        worker.poll();
+
+        DeliveryOutcome outcome = drainOutcomes(worker).get(0);
+        assertEquals(NotificationStatus.PENDING, outcome.status());
+        assertFalse(outcome.nextAttemptAt().isBefore(before.plus(Duration.ofHours(1))));
+        assertTrue(outcome.nextAttemptAt().isBefore(before.plus(Duration.ofHours(1)).plusMinutes(1)));
+    }
+
+    @Test
+    void failsOnceTheLastAttemptFails() {
+        NotificationDeliveryWorker worker = worker(failingSender());
+        dueWithAttempts(NotificationPriority.CRITICAL, 5, 6, 7);
+
+        worker.poll();
+
+        Map<Integer, NotificationStatus> byAttempts = drainOutcomes(worker).stream()
+                .collect(Collectors.toMap(outcome -> byId.get(outcome.id()).attempts, DeliveryOutcome::status));
+        assertEquals(Map.of(5, NotificationStatus.PENDING, 6, NotificationStatus.FAILED, 7, NotificationStatus.FAILED),
+                byAttempts);
+        assertEquals(2, worker.meterRegistry.counter("notifications.delivery.failed").count());
+        assertEquals(1, worker.meterRegistry.counter("notifications.delivery.retried").count());
+    }
+
+    // A send turned away by the rate limiter never happened, so it neither counts as an attempt nor records an error
+    @Test
+    void deferralGivesTheAttemptBack() {
+        NotificationDeliveryWorker worker = worker(deferringSender(Duration.ofSeconds(2)));
+        dueWithAttempts(NotificationPriority.BULK, 6);
+
+        LocalDateTime before = LocalDateTime.now();
+        worker.poll();
+
+        DeliveryOutcome outcome = drainOutcomes(worker).get(0);
+        assertEquals(NotificationStatus.PENDING, outcome.status());
+        assertFalse(outcome.attempted());
+        assertNull(outcome.lastError());
+        assertFalse(outcome.nextAttemptAt().isBefore(before.plusSeconds(2)));
+        assertEquals(0, worker.meterRegistry.counter("notifications.delivery.failed").count());
+        assertEquals(1, worker.meterRegistry.counter("notifications.delivery.deferred").count());
+    }
+
+    private NotificationDeliveryWorker worker(NotificationSender sender) {
+        NotificationDeliveryWorker worker = new NotificationDeliveryWorker() {
+            @Override
+            List<Notification> claimDue(NotificationPriority priority, int size) {
+                synchronized (due) {
+                    Queue<Notification> queue = due.getOrDefault(priority, new ArrayDeque<>());
+                    List<Notification> batch = new ArrayList<>();
+                    while (batch.size() < size && !queue.isEmpty()) {
+                        batch.add(queue.poll());
+                    }
+                    claimed.merge(priority, batch.size(), Integer::sum);
+                    return batch;
+                }
+            }
+        };
+        worker.notificationSender = sender;
+        worker.meterRegistry = new SimpleMeterRegistry();
+        worker.claimSize = 50;
+        worker.maxConcurrency = MAX_CONCURRENCY;
+        worker.lease = Duration.ofMinutes(5);
+        worker.maxAttempts = 6;
+        worker.retryBackoff = Duration.ofSeconds(30);
+        worker.maxBackoff = Duration.ofHours(1);
+        worker.laneCapacity = 100;
+        worker.criticalWeight = 8;
+        worker.normalWeight = 3;
+        worker.bulkWeight = 1;
+        worker.init();
+        return worker;
+    }
+
+    private void due(NotificationPriority priority, int count) {
+        due.put(priority, new ArrayDeque<>(PriorityLanesTest.notifications(priority, count)));
+    }
+
+    // One due row per attempt count, as claimDue would return them after counting the claim as an attempt
+    private void dueWithAttempts(NotificationPriority priority, int... attempts) {
+        List<Notification> notifications = PriorityLanesTest.notifications(priority, attempts.length);
+        for (int i = 0; i < attempts.length; i++) {
+            notifications.get(i).attempts = attempts[i];
+            byId.put(notifications.get(i).id, notifications.get(i));
+        }
+        due.put(priority, new ArrayDeque<>(notifications));
+    }
+
+    private static List<DeliveryOutcome> drainOutcomes(NotificationDeliveryWorker worker) {
+        List<DeliveryOutcome> outcomes = new ArrayList<>(worker.outcomes);
+        worker.outcomes.clear();
+        return outcomes;
+    }
+
+    private static NotificationSender hangingSender() {
+        return new NotificationSender() {
+            @Override
+            public Multi<SendResult> sendAll(List<Notification> notifications) {
+                return Multi.createFrom().nothing();
+            }
+        };
+    }
+
+    private static NotificationSender failingSender() {
+        return new NotificationSender() {
+            @Override
+            public Multi<SendResult> sendAll(List<Notification> notifications) {
+                return Multi.createFrom().iterable(notifications)
+                        .map(notification -> new SendResult(notification, new IllegalStateException("smtp down"), null));
+            }
+        };
+    }
+
+    private static NotificationSender deferringSender(Duration wait) {
+        return new NotificationSender() {
+            @Override
+            public Multi<SendResult> sendAll(List<Notification> notifications) {
+                return Multi.createFrom().iterable(notifications)
+                        .map(notification -> new SendResult(notification, null, wait));
+            }
+        };
+    }
+
+    private NotificationSender completingSender() {
+        return new NotificationSender() {
+            @Override
+            public Multi<SendResult> sendAll(List<Notification> notifications) {
+                return Multi.createFrom().iterable(notifications)
+                        .emitOn(Infrastructure.getDefaultWorkerPool())
+                        .map(notification -> {
+                            sent.incrementAndGet();
+                            return new SendResult(notification, null, null);
+                        });
+            }
+        };
+    }
+}
@@ -0,0 +1,81 @@
+package jobs;
+
+import models.Notification;
+import models.NotificationPriority;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PriorityLanesTest {
+
+    private static final Map<NotificationPriority, Integer> WEIGHTS = Map.of(
+            NotificationPriority.CRITICAL, 8,
+            NotificationPriority.NORMAL, 3,
+            NotificationPriority.BULK, 1);
+
+    @Test
+    void picksLanesInProportionToTheirWeights() {
+        PriorityLanes lanes = new PriorityLanes(100, WEIGHTS);
+        for (NotificationPriority priority : NotificationPriority.values()) {
+            lanes.offer(priority, notifications(priority, 50));
+        }
+
+        Map<NotificationPriority, Integer> picked = new EnumMap<>(NotificationPriority.class);
+        for (PriorityLanes.Waiting waiting : lanes.next(24)) {
+            picked.merge(waiting.notification().priority, 1, Integer::sum);
+        }
+
+        assertEquals(Map.of(NotificationPriority.CRITICAL, 16, NotificationPriority.NORMAL, 6, NotificationPriority.BULK, 2), picked);
+        assertEquals(150 - 24, lanes.depth());
+    }
+
+    @Test
+    void givesAnIdleLanesTurnToTheOthers() {
+        PriorityLanes lanes = new PriorityLanes(100, WEIGHTS);
+        lanes.offer(NotificationPriority.BULK, notifications(NotificationPriority.BULK, 10));
+
+        assertEquals(10, lanes.next(16).size());
+        assertEquals(0, lanes.depth());
+    }
+
+    @Test
+    void sharesSlotsByWeightRoundingUp() {
+        PriorityLanes lanes = new PriorityLanes(100, WEIGHTS);
+
+        assertEquals(Map.of(NotificationPriority.CRITICAL, 11, NotificationPriority.NORMAL, 4, NotificationPriority.BULK, 2),
+                lanes.shares(16));
+        assertEquals(Map.of(NotificationPriority.CRITICAL, 1, NotificationPriority.NORMAL, 1, NotificationPriority.BULK, 1),
+                lanes.shares(1));
+        assertEquals(Map.of(NotificationPriority.CRITICAL, 0, NotificationPriority.NORMAL, 0, NotificationPriority.BULK, 0),
+                lanes.shares(-3));
+    }
+
+    @Test
+    void recordsWhenEachNotificationWasQueued() {
+        PriorityLanes lanes = new PriorityLanes(100, WEIGHTS);
+        long before = System.nanoTime();
+        lanes.offer(NotificationPriority.NORMAL, notifications(NotificationPriority.NORMAL, 1));
+
+        PriorityLanes.Waiting waiting = lanes.next(1).get(0);
+        assertTrue(waiting.queuedAt() >= before && waiting.queuedAt() <= System.nanoTime());
+    }
+
+    static List<Notification> notifications(NotificationPriority priority, int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> {
+                    Notification notification = Notification.email(UUID.randomUUID(), "user" + i + "@example.com", "Hi", "<p>Hi</p>");
+                    notification.id = UUID.randomUUID();
+                    notification.priority = priority;
+                    notification.attempts = 1;
+                    return notification;
+                })
+                .toList();
+    }
+}
@@ -0,0 +1,37 @@
+package mail;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class DigestPartTest {
+
+    @Test
+    void keepsOnlyWhatIsInsideTheBody() {
+        String html = """
+                <!DOCTYPE html>
+                <html>
+                <head><title>Order shipped</title><style>p { color: red; }</style></head>
+                <BODY style="margin: 0">
+                    <p>Your order is on its way.</p>
+                </BODY>
+                </html>
+                """;
+
+        assertEquals("<p>Your order is on its way.</p>", DigestPart.bodyContent(html));
+    }
+
+    @Test
+    void keepsFragmentsAndMissingBodiesAsTheyAre() {
+        assertEquals("<p>Shipped</p>", DigestPart.bodyContent("<p>Shipped</p>"));
+        assertEquals("Plain text", DigestPart.bodyContent("Plain text"));
+        assertNull(DigestPart.bodyContent(null));
+    }
+
+    @Test
+    void doesNotMistakeOtherTagsForTheBody() {
+        assertEquals("<tbody><tr><td>1</td></tr></tbody>",
+                DigestPart.bodyContent("<html><body><tbody><tr><td>1</td></tr></tbody></body></html>"));
+    }
+}
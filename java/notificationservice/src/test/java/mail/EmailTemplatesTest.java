@@ -0,0 +1,82 @@
+package mail;
+
+import io.quarkus.qute.Engine;
+import io.quarkus.qute.HtmlEscaper;
+import io.quarkus.qute.ReflectionValueResolver;
+import io.quarkus.qute.Template;
+import io.quarkus.qute.ValueResolvers;
+import io.quarkus.qute.Variant;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Renders the real template files with an engine set up the way Quarkus sets it up for .html templates,
+// so the templates' escaping can be checked without booting the application
+class EmailTemplatesTest {
+
+    static final Engine ENGINE = Engine.builder()
+            .addDefaults()
+            .addValueResolver(new ReflectionValueResolver())
+            .addValueResolver(ValueResolvers.rawResolver())
+            .addResultMapper(new HtmlEscaper(List.of(Variant.TEXT_HTML)))
+            .build();
+
+    @Test
+    void welcomeEscapesTheUserNameAndEmail() {
+        String html = template("welcome")
+                .data("userName", "<script>alert('x')</script>")
+                .data("email", "a&b\"<c>@example.com")
+                .render();
+
+        assertTrue(html.contains("Welcome Aboard, &lt;script&gt;alert(&#39;x&#39;)&lt;/script&gt;!"), html);
+        assertTrue(html.contains("a&amp;b&quot;&lt;c&gt;@example.com"), html);
+        assertFalse(html.contains("<script>"));
+    }
+
+    @Test
+    void welcomeReferencesTheInlineLogo() {
+        String html = template("welcome")
+                .data("userName", "Ann")
+                .data("email", "ann@example.com")
+                .render();
+
+        assertTrue(html.contains("cid:logo@orderly.local"));
+    }
+
+    @Test
+    void digestEmbedsEachPartAsAFragment() {
+        String html = template("digest")
+                .data("parts", List.of(
+                        new DigestPart("Order <1> shipped", "<p>On its way</p>"),
+                        new DigestPart("Order 2 delivered", DigestPart.bodyContent(
+                                "<!DOCTYPE html><html><head><title>x</title></head><body><p>Delivered</p></body></html>"))))
+                .render();
+
+        assertTrue(html.contains("2 UPDATES"), html);
+        assertTrue(html.contains("Order &lt;1&gt; shipped"), html);
+        assertTrue(html.contains("<p>On its way</p>"), html);
+        assertTrue(html.contains("<p>Delivered</p>"), html);
+        assertEquals(1, html.split("<html", -1).length - 1, "one document");
+        assertEquals(1, html.split("<body", -1).length - 1, "one body");
+    }
+
+    static Template template(String name) {
+        return ENGINE.parse(source(name), Variant.forContentType(Variant.TEXT_HTML));
+    }
+
+    static String source(String name) {
+        try (InputStream in = EmailTemplatesTest.class.getResourceAsStream("/templates/email/" + name + ".html")) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
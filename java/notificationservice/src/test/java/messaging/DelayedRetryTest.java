@@ -0,0 +1,293 @@
+package messaging;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.BasicProperties;
+import com.rabbitmq.client.Envelope;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.smallrye.reactive.messaging.rabbitmq.IncomingRabbitMQMetadata;
+import io.smallrye.reactive.messaging.rabbitmq.OutgoingRabbitMQMetadata;
+import org.eclipse.microprofile.reactive.messaging.Emitter;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// The emitter keeps every copy for the test to confirm or reject, standing in for the broker's publish-confirm
+class DelayedRetryTest {
+
+    private static final String QUEUE = "user-created";
+
+    private final BlockingQueue<Message<? extends byte[]>> published = new LinkedBlockingQueue<>();
+    private final AtomicInteger declarations = new AtomicInteger();
+    private final AtomicInteger declared = new AtomicInteger();
+    private volatile boolean brokerDown;
+    private DelayedRetry retry;
+
+    @BeforeEach
+    void setUp() {
+        retry = new DelayedRetry() {
+            @Override
+            void declareTopology() throws IOException {
+                declarations.incrementAndGet();
+                if (brokerDown) {
+                    throw new IOException("connection refused");
+                }
+                declared.incrementAndGet();
+            }
+        };
+        retry.retryEmitter = emitter();
+        retry.meterRegistry = new SimpleMeterRegistry();
+        retry.exchange = "notificationservice-retries";
+        retry.queues = List.of(QUEUE);
+        retry.delays = List.of(Duration.ofSeconds(10), Duration.ofMinutes(1), Duration.ofMinutes(10), Duration.ofHours(1));
+    }
+
+    @Test
+    void firstFailureGoesToTheFirstDelayQueue() throws Exception {
+        Received original = received(null);
+
+        CompletableFuture<Void> done = retry.retryOrPark(original.message, QUEUE, new IllegalStateException("db down"))
+                .subscribeAsCompletionStage();
+
+        Message<? extends byte[]> copy = nextCopy();
+        OutgoingRabbitMQMetadata metadata = copy.getMetadata(OutgoingRabbitMQMetadata.class).orElseThrow();
+        assertEquals("user-created.retry-1", metadata.getRoutingKey());
+        assertEquals(1, metadata.getHeaders().get(DelayedRetry.RETRY_COUNT_HEADER));
+        assertEquals("db down", metadata.getHeaders().get(DelayedRetry.LAST_ERROR_HEADER));
+        assertEquals(2, metadata.getDeliveryMode());
+        assertEquals("{\"userId\":1}", new String(copy.getPayload(), StandardCharsets.UTF_8));
+
+        done.get(5, TimeUnit.SECONDS);
+        assertEquals(1, retry.meterRegistry.counter("messaging.consumer.retried", "queue", QUEUE).count(), 0);
+        assertEquals(1, original.acks.get());
+        assertNull(original.nacked);
+    }
+
+    @Test
+    void countsRetriesAndKeepsTheOriginalHeaders() throws Exception {
+        Received original = received(2);
+
+        CompletableFuture<Void> done = retry.retryOrPark(original.message, QUEUE, new IllegalStateException("db down"))
+                .subscribeAsCompletionStage();
+
+        OutgoingRabbitMQMetadata metadata = nextCopy().getMetadata(OutgoingRabbitMQMetadata.class).orElseThrow();
+        assertEquals("user-created.retry-3", metadata.getRoutingKey());
+        assertEquals(3, metadata.getHeaders().get(DelayedRetry.RETRY_COUNT_HEADER));
+        assertEquals("urn:message:Users:UserCreatedEvent", metadata.getHeaders().get("MT-MessageType"));
+        assertEquals("application/json", metadata.getContentType());
+        assertEquals("message-1", metadata.getMessageId());
+        done.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void usesTheLastDelayBeforeParking() throws Exception {
+        CompletableFuture<Void> done = retry.retryOrPark(received(3).message, QUEUE, new IllegalStateException("db down"))
+                .subscribeAsCompletionStage();
+
+        OutgoingRabbitMQMetadata metadata = nextCopy().getMetadata(OutgoingRabbitMQMetadata.class).orElseThrow();
+        assertEquals("user-created.retry-4", metadata.getRoutingKey());
+        assertEquals(4, metadata.getHeaders().get(DelayedRetry.RETRY_COUNT_HEADER));
+        done.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void parksTheMessageOnceEveryDelayIsUsedUp() throws Exception {
+        Received original = received(4);
+
+        CompletableFuture<Void> done = retry.retryOrPark(original.message, QUEUE, new IllegalStateException("db down"))
+                .subscribeAsCompletionStage();
+
+        OutgoingRabbitMQMetadata metadata = nextCopy().getMetadata(OutgoingRabbitMQMetadata.class).orElseThrow();
+        assertEquals("user-created.parking-lot", metadata.getRoutingKey());
+        assertEquals(4, metadata.getHeaders().get(DelayedRetry.RETRY_COUNT_HEADER));
+        done.get(5, TimeUnit.SECONDS);
+        assertEquals(1, original.acks.get());
+        assertEquals(1, retry.meterRegistry.counter("messaging.consumer.parked", "queue", QUEUE).count(), 0);
+        assertEquals(0, retry.meterRegistry.counter("messaging.consumer.retried", "queue", QUEUE).count(), 0);
+    }
+
+    @Test
+    void acksTheOriginalOnlyOnceTheCopyIsConfirmed() throws Exception {
+        retry.retryEmitter = emitter(false);
+        Received original = received(null);
+
+        CompletableFuture<Void> done = retry.retryOrPark(original.message, QUEUE, new IllegalStateException("db down"))
+                .subscribeAsCompletionStage();
+
+        Message<? extends byte[]> copy = nextCopy();
+        Thread.sleep(50);
+        assertFalse(done.isDone());
+        assertEquals(0, original.acks.get());
+
+        copy.ack();
+        done.get(5, TimeUnit.SECONDS);
+        assertEquals(1, original.acks.get());
+    }
+
+    @Test
+    void requeuesTheOriginalWhenTheCopyIsRejected() throws Exception {
+        retry.retryEmitter = emitter(false);
+        Received original = received(null);
+
+        CompletableFuture<Void> done = retry.retryOrPark(original.message, QUEUE, new IllegalStateException("db down"))
+                .subscribeAsCompletionStage();
+
+        IllegalStateException rejected = new IllegalStateException("nacked by broker");
+        nextCopy().nack(rejected);
+        done.get(5, TimeUnit.SECONDS);
+        assertEquals(0, original.acks.get());
+        assertSame(rejected, original.nacked);
+    }
+
+    // Without its queues a copy would be confirmed but routed nowhere, so nothing is published until they exist
+    @Test
+    void requeuesTheOriginalWhileTheTopologyCannotBeDeclared() throws Exception {
+        brokerDown = true;
+        Received first = received(null);
+
+        retry.retryOrPark(first.message, QUEUE, new IllegalStateException("db down"))
+                .subscribeAsCompletionStage().get(5, TimeUnit.SECONDS);
+
+        assertTrue(published.isEmpty());
+        assertEquals(0, first.acks.get());
+        assertTrue(first.nacked.getMessage().contains("retry topology"));
+
+        brokerDown = false;
+        Received second = received(null);
+        retry.retryOrPark(second.message, QUEUE, new IllegalStateException("db down"))
+                .subscribeAsCompletionStage().get(5, TimeUnit.SECONDS);
+        retry.retryOrPark(received(null).message, QUEUE, new IllegalStateException("db down"))
+                .subscribeAsCompletionStage().get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, second.acks.get());
+        assertEquals(2, published.size());
+        // Declared once it got through; the third message did not declare again
+        assertEquals(2, declarations.get());
+    }
+
+    @Test
+    void startsWithTheBrokerDownAndDeclaresOnceItIsBack() throws Exception {
+        brokerDown = true;
+
+        retry.onStart(null);
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (declarations.get() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(declarations.get() >= 2, "startup declaration was not retried");
+        brokerDown = false;
+        while (declared.get() == 0 && System.nanoTime() < deadline + Duration.ofSeconds(5).toNanos()) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, declared.get());
+
+        int attempts = declarations.get();
+        Received original = received(null);
+        retry.retryOrPark(original.message, QUEUE, new IllegalStateException("db down"))
+                .subscribeAsCompletionStage().get(5, TimeUnit.SECONDS);
+        assertEquals(1, original.acks.get());
+        assertEquals(attempts, declarations.get());
+    }
+
+    private Message<? extends byte[]> nextCopy() throws InterruptedException {
+        Message<? extends byte[]> copy = published.poll(5, TimeUnit.SECONDS);
+        assertTrue(copy != null, "nothing was republished");
+        return copy;
+    }
+
+    private Emitter<byte[]> emitter() {
+        return emitter(true);
+    }
+
+    // With autoConfirm the broker confirms every copy as soon as it is sent
+    private Emitter<byte[]> emitter(boolean autoConfirm) {
+        return new Emitter<>() {
+            @Override
+            public CompletionStage<Void> send(byte[] payload) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public <M extends Message<? extends byte[]>> void send(M message) {
+                published.add(message);
+                if (autoConfirm) {
+                    message.ack();
+                }
+            }
+
+            @Override
+            public void complete() {
+            }
+
+            @Override
+            public void error(Exception e) {
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return false;
+            }
+
+            @Override
+            public boolean hasRequests() {
+                return true;
+            }
+        };
+    }
+
+    private static final class Received {
+        final AtomicInteger acks = new AtomicInteger();
+        volatile Throwable nacked;
+        Message<byte[]> message;
+    }
+
+    private static Received received(Integer retryCount) throws Exception {
+        Map<String, Object> headers = new HashMap<>();
+        headers.put("MT-MessageType", "urn:message:Users:UserCreatedEvent");
+        if (retryCount != null) {
+            headers.put(DelayedRetry.RETRY_COUNT_HEADER, retryCount);
+        }
+        AMQP.BasicProperties properties = new AMQP.BasicProperties.Builder()
+                .headers(headers)
+                .contentType("application/json")
+                .messageId("message-1")
+                .build();
+        // The connector builds this from each delivery; its constructor is not public
+        Constructor<IncomingRabbitMQMetadata> constructor =
+                IncomingRabbitMQMetadata.class.getDeclaredConstructor(BasicProperties.class, Envelope.class);
+        constructor.setAccessible(true);
+        IncomingRabbitMQMetadata metadata = constructor.newInstance(properties, new Envelope(1, false, "UserCreatedEvent", ""));
+
+        Received received = new Received();
+        received.message = Message.of("{\"userId\":1}".getBytes(StandardCharsets.UTF_8))
+                .addMetadata(metadata)
+                .withAck(() -> {
+                    received.acks.incrementAndGet();
+                    return CompletableFuture.completedFuture(null);
+                })
+                .withNack(failure -> {
+                    received.nacked = failure;
+                    return CompletableFuture.completedFuture(null);
+                });
+        return received;
+    }
+}
@@ -0,0 +1,71 @@
+package models;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+// Checks the parameters recordOutcomes binds for each outcome; the statement only records what it is given
+class NotificationTest {
+
+    private final Map<Integer, Object> parameters = new HashMap<>();
+
+    @Test
+    void deferralGivesTheClaimedAttemptBack() throws SQLException {
+        LocalDateTime nextAttemptAt = LocalDateTime.now().plusSeconds(2);
+        UUID id = UUID.randomUUID();
+
+        Notification.bindOutcome(statement(), DeliveryOutcome.deferred(id, nextAttemptAt));
+
+        assertEquals("PENDING", parameters.get(1));
+        assertNull(parameters.get(2));
+        assertEquals(nextAttemptAt, parameters.get(3));
+        assertNull(parameters.get(4));
+        assertEquals(1, parameters.get(5));
+        assertEquals(id, parameters.get(6));
+    }
+
+    @Test
+    void attemptedOutcomesKeepTheirAttempt() throws SQLException {
+        LocalDateTime nextAttemptAt = LocalDateTime.now().plusSeconds(30);
+
+        Notification.bindOutcome(statement(), DeliveryOutcome.retry(UUID.randomUUID(), nextAttemptAt, "smtp down"));
+        assertEquals("PENDING", parameters.get(1));
+        assertEquals(nextAttemptAt, parameters.get(3));
+        assertEquals("smtp down", parameters.get(4));
+        assertEquals(0, parameters.get(5));
+
+        Notification.bindOutcome(statement(), DeliveryOutcome.failed(UUID.randomUUID(), "mailbox unavailable"));
+        assertEquals("FAILED", parameters.get(1));
+        // COALESCE keeps the row's nextAttemptAt when none is given
+        assertNull(parameters.get(3));
+        assertEquals("mailbox unavailable", parameters.get(4));
+        assertEquals(0, parameters.get(5));
+
+        Notification.bindOutcome(statement(), DeliveryOutcome.sent(UUID.randomUUID()));
+        assertEquals("SENT", parameters.get(1));
+        assertEquals(LocalDateTime.class, parameters.get(2).getClass());
+        assertNull(parameters.get(4));
+        assertEquals(0, parameters.get(5));
+    }
+
+    private PreparedStatement statement() {
+        parameters.clear();
+        return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{PreparedStatement.class},
+                (proxy, method, args) -> {
+                    if (method.getName().startsWith("set")) {
+                        parameters.put((Integer) args[0], args[1]);
+                        return null;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
@@ -0,0 +1,72 @@
+package models;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimeOrderedUuidGeneratorTest {
+
+    @Test
+    void setsVersionVariantAndTimestamp() {
+        long before = System.currentTimeMillis();
+        UUID id = TimeOrderedUuidGenerator.next();
+        long after = System.currentTimeMillis();
+
+        assertEquals(7, id.version());
+        assertEquals(2, id.variant());
+        long millis = id.getMostSignificantBits() >>> 16;
+        // A counter overflow may borrow the next millisecond
+        assertTrue(millis >= before && millis <= after + 1, () -> millis + " not within [" + before + ", " + after + "]");
+    }
+
+    @Test
+    void increasesStrictlyWithinAndAcrossMilliseconds() {
+        int count = 200_000;
+        UUID previous = TimeOrderedUuidGenerator.next();
+        int sameMillisecond = 0;
+        for (int i = 0; i < count; i++) {
+            UUID next = TimeOrderedUuidGenerator.next();
+            UUID last = previous;
+            assertTrue(next.compareTo(last) > 0, () -> next + " does not sort after " + last);
+            if (next.getMostSignificantBits() >>> 16 == previous.getMostSignificantBits() >>> 16) {
+                sameMillisecond++;
+            }
+            previous = next;
+        }
+        assertTrue(sameMillisecond > 0, "no two ids shared a millisecond, so the counter was never exercised");
+    }
+
+    @Test
+    void staysUniqueAcrossThreads() throws Exception {
+        int threads = 4;
+        int perThread = 50_000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<List<UUID>>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            results.add(pool.submit(() -> {
+                List<UUID> ids = new ArrayList<>(perThread);
+                for (int i = 0; i < perThread; i++) {
+                    ids.add(TimeOrderedUuidGenerator.next());
+                }
+                return ids;
+            }));
+        }
+
+        Set<UUID> all = new HashSet<>();
+        for (Future<List<UUID>> result : results) {
+            all.addAll(result.get());
+        }
+        pool.shutdown();
+        assertEquals(threads * perThread, all.size());
+    }
+}
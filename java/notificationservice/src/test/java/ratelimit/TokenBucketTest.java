@@ -0,0 +1,67 @@
+package ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TokenBucketTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    // 10 tokens per second is one every 100ms, with room for a burst of 5
+    private final AtomicLong now = new AtomicLong(42 * SECOND);
+    private final TokenBucket bucket = new TokenBucket(10, 5, now::get);
+
+    @Test
+    void allowsAFullBurstAndThenReportsTheWaitForTheNextToken() {
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, bucket.tryAcquire(), "token " + i + " of the burst");
+        }
+        assertEquals(SECOND / 10, bucket.tryAcquire());
+
+        now.addAndGet(SECOND / 10 - 1);
+        assertEquals(1, bucket.tryAcquire());
+        now.addAndGet(1);
+        assertEquals(0, bucket.tryAcquire());
+        assertEquals(SECOND / 10, bucket.tryAcquire());
+    }
+
+    @Test
+    void aRejectedAttemptTakesNothing() {
+        for (int i = 0; i < 5; i++) {
+            bucket.tryAcquire();
+        }
+        for (int i = 0; i < 3; i++) {
+            assertEquals(SECOND / 10, bucket.tryAcquire());
+        }
+        now.addAndGet(SECOND / 10);
+        assertEquals(0, bucket.tryAcquire());
+    }
+
+    @Test
+    void sustainsTheConfiguredRate() {
+        for (int i = 0; i < 5; i++) {
+            bucket.tryAcquire();
+        }
+        for (int i = 0; i < 100; i++) {
+            now.addAndGet(SECOND / 10);
+            assertEquals(0, bucket.tryAcquire(), "request " + i + " at the configured rate");
+        }
+        assertEquals(SECOND / 10, bucket.tryAcquire());
+    }
+
+    @Test
+    void refillsToTheBurstAndNoFurtherWhileIdle() {
+        for (int i = 0; i < 5; i++) {
+            bucket.tryAcquire();
+        }
+        now.addAndGet(3600 * SECOND);
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, bucket.tryAcquire(), "token " + i + " after idling");
+        }
+        assertEquals(SECOND / 10, bucket.tryAcquire());
+    }
+}
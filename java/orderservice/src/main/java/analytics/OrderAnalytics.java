@@ -0,0 +1,174 @@
+package analytics;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dtos.OrderAnalyticsDto;
+import dtos.ProductSalesDto;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.reactive.messaging.Incoming;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+// Live sales stats over a ring of time buckets; memory is buckets x products-per-bucket whatever the catalog size.
+// Fed from the order-created and order-deleted exchanges on a queue per replica, so every instance counts every
+// order whichever replica wrote it and any pod gives the same answer.
+@ApplicationScoped
+public class OrderAnalytics {
+
+    private static final Logger LOG = Logger.getLogger(OrderAnalytics.class);
+
+    @Inject
+    ObjectMapper mapper;
+
+    @ConfigProperty(name = "analytics.bucket-size", defaultValue = "1m")
+    Duration bucketSize;
+
+    @ConfigProperty(name = "analytics.buckets", defaultValue = "60")
+    int bucketCount;
+
+    @ConfigProperty(name = "analytics.products-per-bucket", defaultValue = "256")
+    int productsPerBucket;
+
+    private Bucket[] buckets;
+
+    @PostConstruct
+    void init() {
+        buckets = new Bucket[bucketCount];
+        for (int i = 0; i < bucketCount; i++) {
+            buckets[i] = new Bucket(productsPerBucket);
+        }
+    }
+
+    @Incoming("order-created-analytics")
+    public void receiveOrderCreated(String eventMessage) {
+        try {
+            JsonNode event = mapper.readTree(eventMessage);
+            synchronized (this) {
+                Bucket bucket = bucket(bucketOf(createdAtMillis(event)), true);
+                if (bucket == null) {
+                    return;
+                }
+                bucket.orders++;
+                for (JsonNode item : event.path("items")) {
+                    UUID productId = UUID.fromString(item.get("productId").asText());
+                    int quantity = item.get("quantity").asInt();
+                    bucket.units += quantity;
+                    bucket.products.offer(productId.getMostSignificantBits(), productId.getLeastSignificantBits(), quantity);
+                }
+            }
+        } catch (Exception e) {
+            LOG.errorf(e, "Failed to count order event: %s", eventMessage);
+        }
+    }
+
+    @Incoming("order-deleted-analytics")
+    public void receiveOrderDeleted(String eventMessage) {
+        try {
+            JsonNode event = mapper.readTree(eventMessage);
+            synchronized (this) {
+                Bucket bucket = bucket(bucketOf(createdAtMillis(event)), false);
+                if (bucket == null) {
+                    return;
+                }
+                bucket.orders = Math.max(0, bucket.orders - 1);
+                for (JsonNode item : event.path("items")) {
+                    UUID productId = UUID.fromString(item.get("productId").asText());
+                    int quantity = item.get("quantity").asInt();
+                    bucket.units = Math.max(0, bucket.units - quantity);
+                    bucket.products.retract(productId.getMostSignificantBits(), productId.getLeastSignificantBits(), quantity);
+                }
+            }
+        } catch (Exception e) {
+            LOG.errorf(e, "Failed to count order event: %s", eventMessage);
+        }
+    }
+
+    // Bucketed by when the order was written, not when this replica heard about it; older events have no createdAt
+    private static long createdAtMillis(JsonNode event) {
+        JsonNode createdAt = event.get("createdAt");
+        if (createdAt == null || createdAt.isNull()) {
+            return System.currentTimeMillis();
+        }
+        return LocalDateTime.parse(createdAt.asText()).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    public synchronized OrderAnalyticsDto snapshot(Duration window, int limit) {
+        int span = (int) Math.max(1, Math.min(bucketCount,
+                (window.toMillis() + bucketSize.toMillis() - 1) / bucketSize.toMillis()));
+        ProductCounterMap units = new ProductCounterMap(span * productsPerBucket);
+        ProductCounterMap errors = new ProductCounterMap(span * productsPerBucket);
+
+        OrderAnalyticsDto dto = new OrderAnalyticsDto();
+        dto.windowMinutes = bucketSize.multipliedBy(span).toMinutes();
+
+        long current = bucketOf(System.currentTimeMillis());
+        for (int i = 0; i < span; i++) {
+            Bucket bucket = bucket(current - i, false);
+            if (bucket == null) {
+                continue;
+            }
+            dto.orders += bucket.orders;
+            dto.units += bucket.units;
+            bucket.products.forEach((msb, lsb, count, error) -> {
+                units.addTo(msb, lsb, count);
+                errors.addTo(msb, lsb, error);
+            });
+        }
+
+        List<ProductSalesDto> products = new ArrayList<>(units.size());
+        units.forEach((msb, lsb, count) -> {
+            if (count > 0) {
+                products.add(new ProductSalesDto(new UUID(msb, lsb).toString(), count, errors.get(msb, lsb, 0)));
+            }
+        });
+        products.sort(Comparator.comparingLong((ProductSalesDto product) -> product.units).reversed());
+        dto.topProducts = products.size() > limit ? List.copyOf(products.subList(0, limit)) : products;
+        return dto;
+    }
+
+    private long bucketOf(long epochMillis) {
+        return epochMillis / bucketSize.toMillis();
+    }
+
+    private Bucket bucket(long index, boolean create) {
+        if (bucketOf(System.currentTimeMillis()) - index >= bucketCount) {
+            return null;
+        }
+        Bucket bucket = buckets[(int) Math.floorMod(index, (long) bucketCount)];
+        if (bucket.index != index) {
+            if (!create) {
+                return null;
+            }
+            bucket.reset(index);
+        }
+        return bucket;
+    }
+
+    private static final class Bucket {
+        final SpaceSavingSketch products;
+        long index = -1;
+        long orders;
+        long units;
+
+        Bucket(int capacity) {
+            this.products = new SpaceSavingSketch(capacity);
+        }
+
+        void reset(long index) {
+            this.index = index;
+            this.orders = 0;
+            this.units = 0;
+            this.products.clear();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package analytics;
+
+import java.util.Arrays;
+
+// Open-addressing map from a product UUID (as two longs) to a long, with no per-entry objects
+final class ProductCounterMap {
+
+    interface EntryConsumer {
+        void accept(long msb, long lsb, long value);
+    }
+
+    private final long[] msbs;
+    private final long[] lsbs;
+    private final long[] values;
+    private final boolean[] used;
+    private final int mask;
+    private final int maxSize;
+    private int size;
+
+    ProductCounterMap(int maxSize) {
+        int capacity = Integer.highestOneBit(Math.max(2, maxSize) * 2 - 1) << 1;
+        this.msbs = new long[capacity];
+        this.lsbs = new long[capacity];
+        this.values = new long[capacity];
+        this.used = new boolean[capacity];
+        this.mask = capacity - 1;
+        this.maxSize = maxSize;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long get(long msb, long lsb, long defaultValue) {
+        int slot = find(msb, lsb);
+        return slot >= 0 ? values[slot] : defaultValue;
+    }
+
+    void put(long msb, long lsb, long value) {
+        int slot = slotFor(msb, lsb);
+        values[slot] = value;
+    }
+
+    long addTo(long msb, long lsb, long delta) {
+        int slot = slotFor(msb, lsb);
+        values[slot] += delta;
+        return values[slot];
+    }
+
+    void remove(long msb, long lsb) {
+        int hole = find(msb, lsb);
+        if (hole < 0) {
+            return;
+        }
+
+        // Backward-shift deletion keeps every remaining key reachable from its home slot
+        int next = (hole + 1) & mask;
+        while (used[next]) {
+            int home = home(msbs[next], lsbs[next]);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                msbs[hole] = msbs[next];
+                lsbs[hole] = lsbs[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        used[hole] = false;
+        size--;
+    }
+
+    void clear() {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+    void forEach(EntryConsumer consumer) {
+        for (int slot = 0; slot < used.length; slot++) {
+            if (used[slot]) {
+                consumer.accept(msbs[slot], lsbs[slot], values[slot]);
+            }
+        }
+    }
+
+    private int slotFor(long msb, long lsb) {
+        int slot = home(msb, lsb);
+        while (used[slot]) {
+            if (msbs[slot] == msb && lsbs[slot] == lsb) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size >= maxSize) {
+            throw new IllegalStateException("Product counter map is full: " + maxSize);
+        }
+        used[slot] = true;
+        msbs[slot] = msb;
+        lsbs[slot] = lsb;
+        values[slot] = 0;
+        size++;
+        return slot;
+    }
+
+    private int find(long msb, long lsb) {
+        int slot = home(msb, lsb);
+        while (used[slot]) {
+            if (msbs[slot] == msb && lsbs[slot] == lsb) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int home(long msb, long lsb) {
+        long h = msb * 0x9E3779B97F4A7C15L ^ lsb;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return (int) h & mask;
+    }
+}
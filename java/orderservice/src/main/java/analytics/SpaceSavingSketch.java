@@ -0,0 +1,77 @@
+package analytics;
+
+// Space-Saving heavy hitters: tracks at most `capacity` products, and a product's true count lies
+// in [count - error, count]
+final class SpaceSavingSketch {
+
+    interface EntryConsumer {
+        void accept(long msb, long lsb, long count, long error);
+    }
+
+    private final int capacity;
+    private final long[] msbs;
+    private final long[] lsbs;
+    private final long[] counts;
+    private final long[] errors;
+    private final ProductCounterMap slots;
+    private int size;
+
+    SpaceSavingSketch(int capacity) {
+        this.capacity = capacity;
+        this.msbs = new long[capacity];
+        this.lsbs = new long[capacity];
+        this.counts = new long[capacity];
+        this.errors = new long[capacity];
+        this.slots = new ProductCounterMap(capacity);
+    }
+
+    void offer(long msb, long lsb, long weight) {
+        int slot = (int) slots.get(msb, lsb, -1);
+        if (slot >= 0) {
+            counts[slot] += weight;
+            return;
+        }
+
+        if (size < capacity) {
+            slot = size++;
+            counts[slot] = weight;
+            errors[slot] = 0;
+        } else {
+            slot = minSlot();
+            slots.remove(msbs[slot], lsbs[slot]);
+            errors[slot] = counts[slot];
+            counts[slot] += weight;
+        }
+        msbs[slot] = msb;
+        lsbs[slot] = lsb;
+        slots.put(msb, lsb, slot);
+    }
+
+    void retract(long msb, long lsb, long weight) {
+        int slot = (int) slots.get(msb, lsb, -1);
+        if (slot >= 0) {
+            counts[slot] = Math.max(0, counts[slot] - weight);
+        }
+    }
+
+    void clear() {
+        slots.clear();
+        size = 0;
+    }
+
+    void forEach(EntryConsumer consumer) {
+        for (int slot = 0; slot < size; slot++) {
+            consumer.accept(msbs[slot], lsbs[slot], counts[slot], errors[slot]);
+        }
+    }
+
+    private int minSlot() {
+        int min = 0;
+        for (int slot = 1; slot < size; slot++) {
+            if (counts[slot] < counts[min]) {
+                min = slot;
+            }
+        }
+        return min;
+    }
+}
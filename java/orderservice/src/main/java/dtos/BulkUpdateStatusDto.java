@@ -0,0 +1,8 @@
+package dtos;
+
+import java.util.List;
+
+public class BulkUpdateStatusDto {
+    public List<String> orderIds;
+    public String status;
+}
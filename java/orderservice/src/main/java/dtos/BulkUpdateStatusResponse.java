@@ -0,0 +1,12 @@
+package dtos;
+
+import java.util.List;
+
+public class BulkUpdateStatusResponse {
+    public List<String> updated;
+    public List<String> rejected;
+    public BulkUpdateStatusResponse(List<String> updated, List<String> rejected) {
+        this.updated = updated;
+        this.rejected = rejected;
+    }
+}
@@ -0,0 +1,10 @@
+package dtos;
+
+import java.util.List;
+
+public class OrderAnalyticsDto {
+    public long windowMinutes;
+    public long orders;
+    public long units;
+    public List<ProductSalesDto> topProducts;
+}
@@ -2,6 +2,7 @@ package dtos;
 
 import java.util.List;
 
+// Response schema only; OrderJsonWriter renders orders in this shape straight from the proto
 public class OrderDto {
     public String id;
     public String userId;
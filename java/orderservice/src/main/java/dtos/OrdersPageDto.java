@@ -0,0 +1,8 @@
+package dtos;
+
+import java.util.List;
+
+public class OrdersPageDto {
+    public List<OrderDto> orders;
+    public String nextCursor;
+}
@@ -0,0 +1,12 @@
+package dtos;
+
+public class ProductSalesDto {
+    public String productId;
+    public long units;
+    public long maxOvercount;
+    public ProductSalesDto(String productId, long units, long maxOvercount) {
+        this.productId = productId;
+        this.units = units;
+        this.maxOvercount = maxOvercount;
+    }
+}
@@ -0,0 +1,7 @@
+package events;
+
+import models.Order;
+
+public record OrderCreatedEvent(
+        Order order
+) {}
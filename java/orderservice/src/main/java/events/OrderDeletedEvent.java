@@ -0,0 +1,13 @@
+package events;
+
+import models.OrderViewItem;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+public record OrderDeletedEvent(
+        UUID orderId,
+        LocalDateTime createdAt,
+        List<OrderViewItem> items
+) {}
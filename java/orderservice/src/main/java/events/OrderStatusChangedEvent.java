@@ -0,0 +1,11 @@
+package events;
+
+import models.OrderStatus;
+
+import java.util.Collection;
+import java.util.UUID;
+
+public record OrderStatusChangedEvent(
+        Collection<UUID> orderIds,
+        OrderStatus status
+) {}
@@ -1,43 +1,101 @@
 package grpc;
 
+import com.google.protobuf.ByteString;
 import com.google.protobuf.Empty;
+import com.google.protobuf.Timestamp;
+import com.google.protobuf.UnsafeByteOperations;
+import grpc.client.CartGrpcClient;
 import io.quarkus.grpc.GrpcService;
+import io.quarkus.grpc.RegisterInterceptor;
+import io.quarkus.hibernate.orm.panache.PanacheQuery;
+import io.quarkus.narayana.jta.QuarkusTransaction;
 import io.smallrye.common.annotation.Blocking;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.TimeoutException;
 import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
 import io.smallrye.mutiny.unchecked.Unchecked;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
-import messaging.CartEventConsumer;
+import messaging.CartSnapshot;
 import messaging.OrderEventPublisher;
 import models.OrderStatus;
+import models.OrderView;
+import models.OrderViewItem;
 import models.PaymentType;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
 import org.vladyslavplus.orderservice.*;
 
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
 @GrpcService
+@RegisterInterceptor(StreamReadinessInterceptor.class)
 public class OrderGrpcService implements OrderService {
 
     private static final Logger LOG = Logger.getLogger(OrderGrpcService.class);
+    private static final DateTimeFormatter CREATED_AT_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final ZoneId ZONE = ZoneId.systemDefault();
 
     @Inject
-    CartEventConsumer cartEventConsumer;
+    CartGrpcClient cartGrpcClient;
 
     @Inject
     OrderEventPublisher orderEventPublisher;
 
+    @ConfigProperty(name = "orders.export.batch-size", defaultValue = "500")
+    int exportBatchSize;
+
+    @ConfigProperty(name = "orders.export.max-batch-size", defaultValue = "2000")
+    int exportMaxBatchSize;
+
+    @ConfigProperty(name = "orders.page.default-size", defaultValue = "20")
+    int defaultPageSize;
+
+    @ConfigProperty(name = "orders.page.max-size", defaultValue = "100")
+    int maxPageSize;
+
+    @ConfigProperty(name = "orders.lookup.max-size", defaultValue = "500")
+    int maxLookupSize;
+
+    @ConfigProperty(name = "orders.status.bulk.max-size", defaultValue = "1000")
+    int maxBulkStatusSize;
+
+    @ConfigProperty(name = "orders.status.stream.batch-size", defaultValue = "200")
+    int statusStreamBatchSize;
+
+    @ConfigProperty(name = "orders.status.stream.batch-window", defaultValue = "250ms")
+    Duration statusStreamBatchWindow;
+
+    @ConfigProperty(name = "orders.status.stream.max-pending-batches", defaultValue = "64")
+    int statusStreamMaxPendingBatches;
+
+    @ConfigProperty(name = "cart-client.checkout-timeout", defaultValue = "2s")
+    Duration cartTimeout;
+
     @Blocking
     @Override
     public Uni<Order> getOrderById(OrderIdRequest request) {
         return Uni.createFrom().item(Unchecked.supplier(() -> {
             UUID orderId = UUID.fromString(request.getOrderId());
-            models.Order order = models.Order.findById(orderId);
+            OrderView order = OrderView.findById(orderId);
             if (order == null) {
                 throw new RuntimeException("Order not found: " + orderId);
             }
@@ -45,14 +103,39 @@ public class OrderGrpcService implements OrderService {
         }));
     }
 
+    @Blocking
+    @Override
+    public Uni<OrdersResponse> getOrdersByIds(OrdersByIdsRequest request) {
+        return Uni.createFrom().item(Unchecked.supplier(() -> {
+            if (request.getOrderIdsCount() > maxLookupSize) {
+                throw new IllegalStateException("Too many orders in one lookup: " + request.getOrderIdsCount() +
+                        ". Maximum: " + maxLookupSize);
+            }
+
+            Set<UUID> orderIds = request.getOrderIdsList().stream()
+                    .map(UUID::fromString)
+                    .collect(Collectors.toSet());
+
+            OrdersResponse.Builder responseBuilder = OrdersResponse.newBuilder();
+            if (!orderIds.isEmpty()) {
+                List<OrderView> orders = OrderView.list("id in ?1", orderIds);
+                for (OrderView order : orders) {
+                    responseBuilder.addOrders(toProtoOrder(order));
+                }
+            }
+
+            return responseBuilder.build();
+        }));
+    }
+
     @Blocking
     @Override
     public Uni<OrdersResponse> getAllOrders(Empty request) {
         return Uni.createFrom().item(Unchecked.supplier(() -> {
-            List<models.Order> orders = models.Order.listAll();
+            List<OrderView> orders = OrderView.listAll();
 
             OrdersResponse.Builder responseBuilder = OrdersResponse.newBuilder();
-            for (models.Order order : orders) {
+            for (OrderView order : orders) {
                 responseBuilder.addOrders(toProtoOrder(order));
             }
 
@@ -60,6 +143,72 @@ public class OrderGrpcService implements OrderService {
         }));
     }
 
+    @Override
+    public Multi<Order> exportOrders(ExportOrdersRequest request) {
+        StreamReadinessInterceptor.Readiness readiness = StreamReadinessInterceptor.current();
+        int batchSize = request.getBatchSize() > 0
+                ? Math.min(request.getBatchSize(), exportMaxBatchSize)
+                : exportBatchSize;
+        ExportCursor cursor = new ExportCursor();
+
+        return Multi.createBy().repeating()
+                .uni(() -> readiness.awaitReady()
+                        .emitOn(Infrastructure.getDefaultWorkerPool())
+                        .map(ignored -> fetchExportPage(cursor, batchSize)))
+                .whilst(page -> page.size() == batchSize)
+                .onItem().<Order>disjoint()
+                .onCompletion().invoke(() -> LOG.infof("Order export finished after %d orders", cursor.exported));
+    }
+
+    @Blocking
+    @Override
+    public Uni<OrdersPage> listOrders(ListOrdersRequest request) {
+        return Uni.createFrom().item(Unchecked.supplier(() -> {
+            int pageSize = request.getPageSize() > 0
+                    ? Math.min(request.getPageSize(), maxPageSize)
+                    : defaultPageSize;
+
+            List<String> conditions = new ArrayList<>();
+            Map<String, Object> params = new HashMap<>();
+
+            if (!request.getUserId().isEmpty()) {
+                conditions.add("userId = :userId");
+                params.put("userId", UUID.fromString(request.getUserId()));
+            }
+            if (request.getStatusesCount() > 0) {
+                List<OrderStatus> statuses = request.getStatusesList().stream()
+                        .map(this::parseStatus)
+                        .toList();
+                conditions.add("status in :statuses");
+                params.put("statuses", statuses);
+            }
+            if (!request.getPageToken().isEmpty()) {
+                OrderPageToken token = OrderPageToken.decode(request.getPageToken());
+                conditions.add("(createdAt < :createdAt or (createdAt = :createdAt and id < :id))");
+                params.put("createdAt", token.createdAt());
+                params.put("id", token.id());
+            }
+
+            String where = conditions.isEmpty() ? "" : "where " + String.join(" and ", conditions) + " ";
+            List<OrderView> orders = OrderView
+                    .<OrderView>find(where + "order by createdAt desc, id desc", params)
+                    .page(0, pageSize + 1)
+                    .list();
+
+            OrdersPage.Builder page = OrdersPage.newBuilder();
+            boolean hasMore = orders.size() > pageSize;
+            List<OrderView> current = hasMore ? orders.subList(0, pageSize) : orders;
+            for (OrderView order : current) {
+                page.addOrders(toProtoOrder(order));
+            }
+            if (hasMore) {
+                page.setNextPageToken(OrderPageToken.of(current.get(pageSize - 1)).encode());
+            }
+
+            return page.build();
+        }));
+    }
+
     @Blocking
     @Override
     @Transactional
@@ -67,14 +216,15 @@ public class OrderGrpcService implements OrderService {
         return Uni.createFrom().item(Unchecked.supplier(() -> {
             UUID userId = UUID.fromString(request.getUserId());
 
-            List<CartEventConsumer.CartItemDto> cartItems = cartEventConsumer.getCartItems(userId);
-            if (cartItems.isEmpty()) {
-                throw new IllegalStateException("Cart is empty or does not exist for user: " + userId);
+            // Bounds the whole hedge, circuit breaker and fallback chain, so a stuck read cannot pin this worker thread
+            CartSnapshot cart;
+            try {
+                cart = cartGrpcClient.getCart(userId).await().atMost(cartTimeout);
+            } catch (TimeoutException e) {
+                throw new IllegalStateException("Timed out reading the cart for user: " + userId);
             }
-
-            List<CartEventConsumer.CartItemDto> orderSnapshot = new ArrayList<>();
-            for (CartEventConsumer.CartItemDto item : cartItems) {
-                orderSnapshot.add(new CartEventConsumer.CartItemDto(item.productId, item.quantity));
+            if (cart.isEmpty()) {
+                throw new IllegalStateException("Cart is empty or does not exist for user: " + userId);
             }
 
             models.Order order = new models.Order();
@@ -87,23 +237,23 @@ public class OrderGrpcService implements OrderService {
                 throw new IllegalStateException("Invalid payment type: " + request.getPaymentType() +
                         ". Allowed values: " + Arrays.toString(PaymentType.values()));
             }
-            order.persist();
 
-            for (CartEventConsumer.CartItemDto cartItem : orderSnapshot) {
+            for (Map.Entry<UUID, Integer> cartItem : cart.items().entrySet()) {
                 models.OrderItem orderItem = new models.OrderItem();
                 orderItem.order = order;
-                orderItem.productId = cartItem.productId;
-                orderItem.quantity = cartItem.quantity;
-                orderItem.persist();
+                orderItem.productId = cartItem.getKey();
+                orderItem.quantity = cartItem.getValue();
                 order.items.add(orderItem);
             }
+            // Lines cascade from the order and are flushed as one JDBC batch
+            order.persist();
 
             orderEventPublisher.publishOrderCreated(order);
 
             LOG.infof("Order created: %s for user: %s with %d items",
-                    order.id, userId, orderSnapshot.size());
+                    order.id, userId, cart.items().size());
 
-            return toProtoOrder(order);
+            return toProtoOrder(OrderView.from(order));
         }));
     }
 
@@ -113,45 +263,81 @@ public class OrderGrpcService implements OrderService {
     public Uni<Order> updateOrderStatus(UpdateOrderStatusRequest request) {
         return Uni.createFrom().item(Unchecked.supplier(() -> {
             UUID orderId = UUID.fromString(request.getOrderId());
-            models.Order order = models.Order.findById(orderId);
-            if (order == null) {
-                throw new RuntimeException("Order not found: " + orderId);
+            OrderStatus newStatus = parseStatus(request.getStatus());
+
+            if (models.Order.transitionStatus(List.of(orderId), newStatus).isEmpty()) {
+                OrderStatus current = models.Order.findStatus(orderId);
+                if (current == null) {
+                    throw new RuntimeException("Order not found: " + orderId);
+                }
+                throw new IllegalStateException("Cannot change order status from " + current + " to " + newStatus);
             }
 
-            OrderStatus newStatus;
-            try {
-                newStatus = OrderStatus.valueOf(request.getStatus().toUpperCase());
-            } catch (IllegalArgumentException e) {
-                throw new IllegalStateException("Invalid order status: " + request.getStatus() +
-                        ". Allowed values: " + Arrays.toString(OrderStatus.values()));
-            }
+            orderEventPublisher.publishOrderUpdated(orderId, newStatus.name());
 
-            order.status = newStatus;
-            order.persist();
+            LOG.infof("Order %s updated to status %s", orderId, newStatus);
 
-            orderEventPublisher.publishOrderUpdated(order.id, order.status.name());
+            return toProtoOrder(OrderView.findById(orderId));
+        }));
+    }
 
-            LOG.infof("Order %s updated to status %s", order.id, order.status);
+    @Blocking
+    @Override
+    @Transactional
+    public Uni<BulkUpdateOrderStatusResponse> bulkUpdateOrderStatus(BulkUpdateOrderStatusRequest request) {
+        return Uni.createFrom().item(Unchecked.supplier(() -> {
+            OrderStatus newStatus = parseStatus(request.getStatus());
+            if (request.getOrderIdsCount() > maxBulkStatusSize) {
+                throw new IllegalStateException("Too many orders in one status update: " + request.getOrderIdsCount() +
+                        ". Maximum: " + maxBulkStatusSize);
+            }
 
-            return toProtoOrder(order);
+            Set<UUID> orderIds = request.getOrderIdsList().stream()
+                    .map(UUID::fromString)
+                    .collect(Collectors.toCollection(LinkedHashSet::new));
+            Set<UUID> updated = new HashSet<>(models.Order.transitionStatus(orderIds, newStatus));
+            orderEventPublisher.publishOrderUpdates(updated, newStatus.name());
+
+            BulkUpdateOrderStatusResponse.Builder response = BulkUpdateOrderStatusResponse.newBuilder();
+            for (UUID orderId : orderIds) {
+                if (updated.contains(orderId)) {
+                    response.addUpdatedOrderIds(orderId.toString());
+                } else {
+                    response.addRejectedOrderIds(orderId.toString());
+                }
+            }
+
+            LOG.infof("Bulk status update to %s: %d updated, %d rejected",
+                    newStatus, response.getUpdatedOrderIdsCount(), response.getRejectedOrderIdsCount());
+
+            return response.build();
         }));
     }
 
+    @Override
+    public Multi<OrderStatusUpdateResult> streamOrderStatusUpdates(Multi<UpdateOrderStatusRequest> requests) {
+        return requests
+                .group().intoLists().of(statusStreamBatchSize, statusStreamBatchWindow)
+                // The window timer keeps closing batches while the database is behind; they wait here instead of
+                // failing the stream for lack of demand, and only a client that many batches ahead gets an error
+                .onOverflow().buffer(statusStreamMaxPendingBatches)
+                .emitOn(Infrastructure.getDefaultWorkerPool())
+                .onItem().transformToIterable(this::applyStatusBatch);
+    }
+
     @Blocking
     @Override
     @Transactional
     public Uni<Empty> deleteOrder(OrderIdRequest request) {
         return Uni.createFrom().item(Unchecked.supplier(() -> {
             UUID orderId = UUID.fromString(request.getOrderId());
-            models.Order order = models.Order.findById(orderId);
-            if (order == null) {
+            OrderView order = OrderView.findById(orderId);
+            if (order == null || !models.Order.softDelete(orderId)) {
                 throw new RuntimeException("Order not found: " + orderId);
             }
 
             String status = order.status != null ? order.status.name() : "UNKNOWN";
 
-            order.delete();
-
             orderEventPublisher.publishOrderDeleted(order);
 
             LOG.infof("Order %s deleted with status %s", orderId, status);
@@ -160,25 +346,173 @@ public class OrderGrpcService implements OrderService {
         }));
     }
 
-    private Order toProtoOrder(models.Order order) {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    // One transaction for the whole batch. It is cut into runs in which every order appears at most once, so a run
+    // can be applied as one conditional UPDATE per target status without reordering any single order's updates;
+    // runs are applied in arrival order
+    List<OrderStatusUpdateResult> applyStatusBatch(List<UpdateOrderStatusRequest> batch) {
+        OrderStatusUpdateResult[] results = new OrderStatusUpdateResult[batch.size()];
+        List<Map<OrderStatus, Map<UUID, Integer>>> runs = new ArrayList<>();
+        Map<OrderStatus, Map<UUID, Integer>> run = new EnumMap<>(OrderStatus.class);
+        Set<UUID> inRun = new HashSet<>();
+
+        for (int i = 0; i < batch.size(); i++) {
+            UpdateOrderStatusRequest request = batch.get(i);
+            try {
+                UUID orderId = UUID.fromString(request.getOrderId());
+                OrderStatus status = parseStatus(request.getStatus());
+                if (!inRun.add(orderId)) {
+                    runs.add(run);
+                    run = new EnumMap<>(OrderStatus.class);
+                    inRun.clear();
+                    inRun.add(orderId);
+                }
+                run.computeIfAbsent(status, ignored -> new LinkedHashMap<>()).put(orderId, i);
+            } catch (RuntimeException e) {
+                results[i] = statusResult(request, false, e.getMessage());
+            }
+        }
+        if (!run.isEmpty()) {
+            runs.add(run);
+        }
+
+        try {
+            QuarkusTransaction.requiringNew().run(() -> {
+                for (Map<OrderStatus, Map<UUID, Integer>> next : runs) {
+                    for (Map.Entry<OrderStatus, Map<UUID, Integer>> group : next.entrySet()) {
+                        OrderStatus status = group.getKey();
+                        Map<UUID, Integer> positions = group.getValue();
+
+                        List<UUID> updated = models.Order.transitionStatus(positions.keySet(), status);
+                        orderEventPublisher.publishOrderUpdates(updated, status.name());
+                        for (UUID orderId : updated) {
+                            int i = positions.remove(orderId);
+                            results[i] = statusResult(batch.get(i), true, "");
+                        }
+
+                        Map<UUID, OrderStatus> current = models.Order.findStatuses(positions.keySet());
+                        for (Map.Entry<UUID, Integer> rejected : positions.entrySet()) {
+                            OrderStatus from = current.get(rejected.getKey());
+                            String error = from == null
+                                    ? "Order not found: " + rejected.getKey()
+                                    : "Cannot change order status from " + from + " to " + status;
+                            results[rejected.getValue()] = statusResult(batch.get(rejected.getValue()), false, error);
+                        }
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            LOG.errorf(e, "Failed to apply a batch of %d order status updates", batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                if (results[i] == null || results[i].getUpdated()) {
+                    results[i] = statusResult(batch.get(i), false, "Batch failed: " + e.getMessage());
+                }
+            }
+        }
+
+        LOG.infof("Applied a batch of %d order status updates", batch.size());
+        return Arrays.asList(results);
+    }
+
+    private static OrderStatusUpdateResult statusResult(UpdateOrderStatusRequest request, boolean updated, String error) {
+        return OrderStatusUpdateResult.newBuilder()
+                .setOrderId(request.getOrderId())
+                .setStatus(request.getStatus())
+                .setUpdated(updated)
+                .setError(error != null ? error : "")
+                .build();
+    }
+
+    private OrderStatus parseStatus(String status) {
+        try {
+            return OrderStatus.valueOf(status.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("Invalid order status: " + status +
+                    ". Allowed values: " + Arrays.toString(OrderStatus.values()));
+        }
+    }
 
+    private List<Order> fetchExportPage(ExportCursor cursor, int batchSize) {
+        return QuarkusTransaction.requiringNew().call(() -> {
+            PanacheQuery<OrderView> query = cursor.createdAt == null
+                    ? OrderView.find("order by createdAt, id")
+                    : OrderView.find("createdAt > ?1 or (createdAt = ?1 and id > ?2) order by createdAt, id",
+                            cursor.createdAt, cursor.id);
+
+            List<OrderView> orders = query.page(0, batchSize).list();
+            if (!orders.isEmpty()) {
+                OrderView last = orders.get(orders.size() - 1);
+                cursor.createdAt = last.createdAt;
+                cursor.id = last.id;
+                cursor.exported += orders.size();
+            }
+
+            return orders.stream()
+                    .map(this::toProtoOrder)
+                    .toList();
+        });
+    }
+
+    private static class ExportCursor {
+        LocalDateTime createdAt;
+        UUID id;
+        long exported;
+    }
+
+    private Order toProtoOrder(OrderView order) {
         Order.Builder builder = Order.newBuilder()
                 .setId(order.id.toString())
+                .setUuid(uuidBytes(order.id))
                 .setUserId(order.userId.toString())
+                .setUserUuid(uuidBytes(order.userId))
                 .setStatus(order.status.name())
-                .setCreatedAtString(order.createdAt.format(formatter))
-                .setDeliveryAddress(order.deliveryAddress != null ? order.deliveryAddress : "")
-                .setPaymentType(order.paymentType != null ? order.paymentType.name() : "");
-
-        List<OrderItem> items = order.items.stream()
-                .map(item -> OrderItem.newBuilder()
-                        .setProductId(item.productId.toString())
-                        .setQuantity(item.quantity)
-                        .build())
-                .collect(Collectors.toList());
-
-        builder.addAllItems(items);
+                .setState(toProtoState(order.status))
+                .setCreatedAtString(order.createdAt.format(CREATED_AT_FORMAT))
+                .setCreatedAt(toTimestamp(order.createdAt))
+                .setDeliveryAddress(order.deliveryAddress != null ? order.deliveryAddress : "");
+
+        if (order.paymentType != null) {
+            builder.setPaymentType(order.paymentType.name())
+                    .setPaymentMethod(toProtoPaymentMethod(order.paymentType));
+        }
+
+        for (OrderViewItem item : order.items) {
+            builder.addItems(OrderItem.newBuilder()
+                    .setProductId(item.productId().toString())
+                    .setProductUuid(uuidBytes(item.productId()))
+                    .setQuantity(item.quantity()));
+        }
         return builder.build();
     }
-}
\ No newline at end of file
+
+    private static OrderState toProtoState(OrderStatus status) {
+        return switch (status) {
+            case PENDING -> OrderState.ORDER_STATE_PENDING;
+            case PROCESSING -> OrderState.ORDER_STATE_PROCESSING;
+            case DELIVERED -> OrderState.ORDER_STATE_DELIVERED;
+            case CANCELLED -> OrderState.ORDER_STATE_CANCELLED;
+        };
+    }
+
+    private static PaymentMethod toProtoPaymentMethod(PaymentType paymentType) {
+        return switch (paymentType) {
+            case CASH_ON_DELIVERY -> PaymentMethod.PAYMENT_METHOD_CASH_ON_DELIVERY;
+            case ONLINE -> PaymentMethod.PAYMENT_METHOD_ONLINE;
+        };
+    }
+
+    private static Timestamp toTimestamp(LocalDateTime dateTime) {
+        Instant instant = dateTime.atZone(ZONE).toInstant();
+        return Timestamp.newBuilder()
+                .setSeconds(instant.getEpochSecond())
+                .setNanos(instant.getNano())
+                .build();
+    }
+
+    private static ByteString uuidBytes(UUID id) {
+        byte[] bytes = new byte[16];
+        ByteBuffer.wrap(bytes)
+                .putLong(id.getMostSignificantBits())
+                .putLong(id.getLeastSignificantBits());
+        return UnsafeByteOperations.unsafeWrap(bytes);
+    }
+}
@@ -0,0 +1,36 @@
+package grpc;
+
+import models.OrderView;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.UUID;
+
+public record OrderPageToken(LocalDateTime createdAt, UUID id) {
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    public static OrderPageToken of(OrderView order) {
+        return new OrderPageToken(order.createdAt, order.id);
+    }
+
+    public String encode() {
+        String raw = createdAt + "|" + id;
+        return ENCODER.encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static OrderPageToken decode(String token) {
+        try {
+            String raw = new String(DECODER.decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf('|');
+            return new OrderPageToken(
+                    LocalDateTime.parse(raw.substring(0, separator)),
+                    UUID.fromString(raw.substring(separator + 1))
+            );
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("Invalid page token: " + token);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package grpc;
+
+import io.grpc.*;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+@ApplicationScoped
+public class StreamReadinessInterceptor implements ServerInterceptor {
+
+    private static final Context.Key<Readiness> READINESS = Context.key("stream-readiness");
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call,
+                                                                 Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        if (call.getMethodDescriptor().getType() != MethodDescriptor.MethodType.SERVER_STREAMING) {
+            return next.startCall(call, headers);
+        }
+
+        Readiness readiness = new Readiness(call);
+        Context context = Context.current().withValue(READINESS, readiness);
+        ServerCall.Listener<ReqT> delegate = Contexts.interceptCall(context, call, headers, next);
+
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(delegate) {
+            @Override
+            public void onReady() {
+                readiness.signal();
+                super.onReady();
+            }
+
+            @Override
+            public void onCancel() {
+                readiness.signal();
+                super.onCancel();
+            }
+        };
+    }
+
+    // Must be called synchronously from the service method, while the call's gRPC context is current
+    public static Readiness current() {
+        Readiness readiness = READINESS.get();
+        return readiness != null ? readiness : Readiness.ALWAYS_READY;
+    }
+
+    public static class Readiness {
+
+        static final Readiness ALWAYS_READY = new Readiness(null);
+
+        private final ServerCall<?, ?> call;
+        private final AtomicReference<CompletableFuture<Void>> pending = new AtomicReference<>();
+
+        Readiness(ServerCall<?, ?> call) {
+            this.call = call;
+        }
+
+        public Uni<Void> awaitReady() {
+            if (isReady()) {
+                return Uni.createFrom().voidItem();
+            }
+
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            pending.set(future);
+            // Re-check after publishing the future so an onReady that raced us is not lost
+            if (isReady()) {
+                signal();
+            }
+            return Uni.createFrom().completionStage(future);
+        }
+
+        void signal() {
+            CompletableFuture<Void> future = pending.getAndSet(null);
+            if (future != null) {
+                future.complete(null);
+            }
+        }
+
+        private boolean isReady() {
+            return call == null || call.isReady() || call.isCancelled();
+        }
+    }
+}
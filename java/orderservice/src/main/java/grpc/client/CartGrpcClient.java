@@ -0,0 +1,82 @@
+package grpc.client;
+
+import io.quarkus.grpc.GrpcClient;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import messaging.CartEventConsumer;
+import messaging.CartSnapshot;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.faulttolerance.CircuitBreaker;
+import org.eclipse.microprofile.faulttolerance.Fallback;
+import org.jboss.logging.Logger;
+import org.vladyslavplus.cartservice.Cart;
+import org.vladyslavplus.cartservice.CartItem;
+import org.vladyslavplus.cartservice.GetCartRequest;
+import org.vladyslavplus.cartservice.MutinyCartServiceGrpc;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@ApplicationScoped
+public class CartGrpcClient {
+
+    private static final Logger LOG = Logger.getLogger(CartGrpcClient.class);
+
+    @GrpcClient("cart")
+    MutinyCartServiceGrpc.MutinyCartServiceStub cartService;
+
+    @Inject
+    CartEventConsumer cartEventConsumer;
+
+    @ConfigProperty(name = "cart-client.deadline", defaultValue = "300ms")
+    Duration deadline;
+
+    @ConfigProperty(name = "cart-client.hedge-delay", defaultValue = "100ms")
+    Duration hedgeDelay;
+
+    @CircuitBreaker(requestVolumeThreshold = 20, failureRatio = 0.5, delay = 5, delayUnit = ChronoUnit.SECONDS)
+    @Fallback(fallbackMethod = "getLocalCart")
+    public Uni<CartSnapshot> getCart(UUID userId) {
+        GetCartRequest request = GetCartRequest.newBuilder()
+                .setUserId(userId.toString())
+                .build();
+
+        // GetCart is read-only, so a second attempt is sent if the first has not answered within the hedge delay;
+        // whichever succeeds first wins and the other is cancelled
+        Uni<Cart> primary = call(request);
+        Uni<Cart> hedge = Uni.createFrom().voidItem()
+                .onItem().delayIt().by(hedgeDelay)
+                .chain(() -> call(request));
+
+        return Multi.createBy().merging().collectFailures()
+                .streams(primary.toMulti(), hedge.toMulti())
+                .toUni()
+                .map(CartGrpcClient::toSnapshot);
+    }
+
+    Uni<CartSnapshot> getLocalCart(UUID userId) {
+        LOG.warnf("Cart service unavailable, falling back to local cart projection for user %s", userId);
+        return Uni.createFrom().item(() -> cartEventConsumer.getCart(userId))
+                .runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+    }
+
+    private Uni<Cart> call(GetCartRequest request) {
+        return cartService.withDeadlineAfter(deadline.toMillis(), TimeUnit.MILLISECONDS)
+                .getCart(request);
+    }
+
+    private static CartSnapshot toSnapshot(Cart cart) {
+        Map<UUID, Integer> items = new HashMap<>();
+        for (CartItem item : cart.getItemsList()) {
+            items.put(UUID.fromString(item.getProductId()), item.getQuantity());
+        }
+        return new CartSnapshot(cart.getSequence(), items);
+    }
+}
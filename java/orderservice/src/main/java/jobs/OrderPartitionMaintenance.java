@@ -0,0 +1,112 @@
+package jobs;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+@ApplicationScoped
+public class OrderPartitionMaintenance {
+
+    private static final Logger LOG = Logger.getLogger(OrderPartitionMaintenance.class);
+
+    private static final List<String> PARTITIONED_TABLES = List.of("orders", "order_items");
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+    private static final String ARCHIVE_SCHEMA = "orders_archive";
+
+    @Inject
+    EntityManager entityManager;
+
+    @ConfigProperty(name = "orders.partitions.months-ahead", defaultValue = "3")
+    int monthsAhead;
+
+    @ConfigProperty(name = "orders.partitions.retention-months", defaultValue = "24")
+    int retentionMonths;
+
+    void onStart(@Observes StartupEvent event) {
+        maintain();
+    }
+
+    @Scheduled(cron = "{orders.partitions.maintenance-cron}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void maintain() {
+        YearMonth current = YearMonth.now();
+        for (int i = 0; i <= monthsAhead; i++) {
+            createPartitions(current.plusMonths(i));
+        }
+
+        YearMonth cutoff = current.minusMonths(retentionMonths);
+        for (YearMonth month : attachedMonths()) {
+            if (month.isBefore(cutoff)) {
+                archive(month);
+            }
+        }
+    }
+
+    private void createPartitions(YearMonth month) {
+        QuarkusTransaction.requiringNew().run(() -> {
+            for (String table : PARTITIONED_TABLES) {
+                entityManager.createNativeQuery("CREATE TABLE IF NOT EXISTS " + partitionName(table, month) +
+                        " PARTITION OF " + table +
+                        " FOR VALUES FROM ('" + month.atDay(1) + "') TO ('" + month.plusMonths(1).atDay(1) + "')")
+                        .executeUpdate();
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<YearMonth> attachedMonths() {
+        List<String> partitions = QuarkusTransaction.requiringNew().call(() -> entityManager.createNativeQuery("""
+                SELECT child.relname
+                FROM pg_inherits i
+                JOIN pg_class parent ON parent.oid = i.inhparent
+                JOIN pg_class child ON child.oid = i.inhrelid
+                JOIN pg_namespace ns ON ns.oid = parent.relnamespace
+                WHERE parent.relname = 'orders' AND ns.nspname = current_schema()
+                """).getResultList());
+
+        return partitions.stream()
+                .filter(name -> name.startsWith("orders_p"))
+                .map(name -> YearMonth.parse(name.substring("orders_p".length()), SUFFIX))
+                .sorted()
+                .toList();
+    }
+
+    // Detached partitions move to the archive schema untouched; only the read model drops their rows
+    private void archive(YearMonth month) {
+        LocalDate from = month.atDay(1);
+        LocalDate to = month.plusMonths(1).atDay(1);
+
+        int removed = QuarkusTransaction.requiringNew().call(() -> {
+            int views = entityManager.createNativeQuery(
+                            "DELETE FROM order_view WHERE createdAt >= :from AND createdAt < :to")
+                    .setParameter("from", from.atStartOfDay())
+                    .setParameter("to", to.atStartOfDay())
+                    .executeUpdate();
+
+            for (String table : PARTITIONED_TABLES) {
+                String partition = partitionName(table, month);
+                entityManager.createNativeQuery("ALTER TABLE " + table + " DETACH PARTITION " + partition)
+                        .executeUpdate();
+                entityManager.createNativeQuery("ALTER TABLE " + partition + " SET SCHEMA " + ARCHIVE_SCHEMA)
+                        .executeUpdate();
+            }
+            return views;
+        });
+
+        LOG.infof("Archived order partitions for %s (%d orders removed from the read model)", month, removed);
+    }
+
+    private static String partitionName(String table, YearMonth month) {
+        return table + "_p" + month.format(SUFFIX);
+    }
+}
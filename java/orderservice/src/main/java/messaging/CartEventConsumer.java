@@ -1,87 +1,134 @@
 package messaging;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.smallrye.common.annotation.Blocking;
+import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.persistence.LockModeType;
+import models.CartProjection;
+import models.CartProjectionItem;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.reactive.messaging.Incoming;
 import org.jboss.logging.Logger;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 @ApplicationScoped
 public class CartEventConsumer {
 
     private static final Logger LOG = Logger.getLogger(CartEventConsumer.class);
 
-    private final Map<UUID, List<CartItemDto>> cartCache = new ConcurrentHashMap<>();
+    @ConfigProperty(name = "cart-projection.hot-set.max-size", defaultValue = "10000")
+    long hotSetMaxSize;
+
+    private Cache<UUID, CartSnapshot> hotSet;
+
+    @PostConstruct
+    void init() {
+        hotSet = Caffeine.newBuilder()
+                .maximumSize(hotSetMaxSize)
+                .build();
+    }
 
     @Incoming("cart-events")
+    @Blocking
     public void receive(String eventMessage) {
         LOG.infof("Received cart event: %s", eventMessage);
 
         try {
-            if (eventMessage.startsWith("CartItemAdded:")) {
-                String[] parts = eventMessage.split(":");
-                UUID userId = UUID.fromString(parts[1]);
-                UUID productId = UUID.fromString(parts[2]);
-                int quantity = Integer.parseInt(parts[3]);
-
-                cartCache.computeIfAbsent(userId, k -> new ArrayList<>());
-                List<CartItemDto> items = cartCache.get(userId);
-
-                Optional<CartItemDto> existing = items.stream()
-                        .filter(i -> i.productId.equals(productId))
-                        .findFirst();
-
-                if (existing.isPresent()) {
-                    existing.get().quantity += quantity;
-                } else {
-                    items.add(new CartItemDto(productId, quantity));
-                }
-
-            } else if (eventMessage.startsWith("CartItemRemoved:")) {
-                String[] parts = eventMessage.split(":");
-                UUID userId = UUID.fromString(parts[1]);
-                UUID productId = UUID.fromString(parts[2]);
-
-                List<CartItemDto> items = cartCache.get(userId);
-                if (items != null) {
-                    items.removeIf(i -> i.productId.equals(productId));
-                }
-
-            } else if (eventMessage.startsWith("CartCleared:")) {
-                UUID userId = UUID.fromString(eventMessage.split(":")[1]);
-                cartCache.remove(userId);
-
-            } else if (eventMessage.startsWith("CartItemQuantityChanged:")) {
-                String[] parts = eventMessage.split(":");
-                UUID userId = UUID.fromString(parts[1]);
-                UUID productId = UUID.fromString(parts[2]);
-                int newQuantity = Integer.parseInt(parts[3]);
-
-                List<CartItemDto> items = cartCache.get(userId);
-                if (items != null) {
-                    Optional<CartItemDto> existing = items.stream()
-                            .filter(i -> i.productId.equals(productId))
-                            .findFirst();
-                    existing.ifPresent(i -> i.quantity = newQuantity);
-                }
+            String[] parts = eventMessage.split(":");
+            int sequenceIndex = switch (parts[0]) {
+                case "CartItemAdded", "CartItemQuantityChanged" -> 4;
+                case "CartItemRemoved" -> 3;
+                case "CartCleared" -> 2;
+                default -> -1;
+            };
+            if (sequenceIndex < 0) {
+                LOG.warnf("Ignoring unknown cart event: %s", eventMessage);
+                return;
+            }
+
+            UUID userId = UUID.fromString(parts[1]);
+            // Events from older cartservice builds carry no sequence and are always applied
+            long sequence = parts.length > sequenceIndex ? Long.parseLong(parts[sequenceIndex]) : 0;
+
+            CartSnapshot snapshot = QuarkusTransaction.requiringNew()
+                    .call(() -> apply(userId, sequence, parts));
+            if (snapshot != null) {
+                publish(userId, snapshot);
             }
         } catch (Exception e) {
             LOG.errorf(e, "Failed to process cart event: %s", eventMessage);
         }
     }
 
-    public List<CartItemDto> getCartItems(UUID userId) {
-        return cartCache.getOrDefault(userId, Collections.emptyList());
+    public CartSnapshot getCart(UUID userId) {
+        CartSnapshot snapshot = hotSet.getIfPresent(userId);
+        return snapshot != null ? snapshot : hotSet.get(userId, this::load);
+    }
+
+    // Snapshots are immutable; a newer one replaces the current one by CAS and never the other way round.
+    // An absent user is left to the next read, which loads the committed state: a publish that arrives late, after
+    // the user was evicted, would otherwise install an old snapshot. compute waits for a load already in flight
+    // and corrects it if it read the projection before this event committed.
+    void publish(UUID userId, CartSnapshot next) {
+        ConcurrentMap<UUID, CartSnapshot> snapshots = hotSet.asMap();
+        while (true) {
+            CartSnapshot current = snapshots.get(userId);
+            if (current == null) {
+                snapshots.compute(userId, (id, loaded) ->
+                        loaded == null || loaded.sequence() > next.sequence() ? loaded : next);
+                return;
+            }
+            if (current.sequence() > next.sequence() || snapshots.replace(userId, current, next)) {
+                return;
+            }
+        }
+    }
+
+    CartSnapshot load(UUID userId) {
+        CartProjection projection = QuarkusTransaction.joiningExisting()
+                .call(() -> CartProjection.findById(userId));
+        return projection != null ? new CartSnapshot(projection.lastSequence, toMap(projection.items)) : CartSnapshot.EMPTY;
     }
 
-    public static class CartItemDto {
-        public UUID productId;
-        public int quantity;
+    private CartSnapshot apply(UUID userId, long sequence, String[] parts) {
+        CartProjection projection = CartProjection.findById(userId, LockModeType.PESSIMISTIC_WRITE);
+        if (projection == null) {
+            projection = new CartProjection();
+            projection.userId = userId;
+            projection.persist();
+        }
+
+        if (sequence > 0 && sequence <= projection.lastSequence) {
+            LOG.debugf("Skipping already applied cart event %d for user %s", sequence, userId);
+            return null;
+        }
+
+        Map<UUID, Integer> items = toMap(projection.items);
+        switch (parts[0]) {
+            case "CartItemAdded" -> items.merge(UUID.fromString(parts[2]), Integer.parseInt(parts[3]), Integer::sum);
+            case "CartItemRemoved" -> items.remove(UUID.fromString(parts[2]));
+            case "CartCleared" -> items.clear();
+            case "CartItemQuantityChanged" -> items.computeIfPresent(UUID.fromString(parts[2]),
+                    (productId, quantity) -> Integer.parseInt(parts[3]));
+        }
+
+        projection.items = items.entrySet().stream()
+                .map(e -> new CartProjectionItem(e.getKey(), e.getValue()))
+                .toList();
+        projection.lastSequence = Math.max(projection.lastSequence, sequence);
+        return new CartSnapshot(projection.lastSequence, items);
+    }
 
-        public CartItemDto(UUID productId, int quantity) {
-            this.productId = productId;
-            this.quantity = quantity;
+    private static Map<UUID, Integer> toMap(List<CartProjectionItem> items) {
+        Map<UUID, Integer> map = new LinkedHashMap<>();
+        for (CartProjectionItem item : items) {
+            map.put(item.productId(), item.quantity());
         }
+        return map;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,19 @@
+package messaging;
+
+import java.util.Map;
+import java.util.UUID;
+
+public record CartSnapshot(
+        long sequence,
+        Map<UUID, Integer> items
+) {
+    public static final CartSnapshot EMPTY = new CartSnapshot(0, Map.of());
+
+    public CartSnapshot {
+        items = Map.copyOf(items);
+    }
+
+    public boolean isEmpty() {
+        return items.isEmpty();
+    }
+}
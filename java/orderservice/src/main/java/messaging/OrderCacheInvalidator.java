@@ -0,0 +1,40 @@
+package messaging;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.reactive.messaging.Incoming;
+import org.jboss.logging.Logger;
+import resources.OrderNearCache;
+
+@ApplicationScoped
+public class OrderCacheInvalidator {
+
+    private static final Logger LOG = Logger.getLogger(OrderCacheInvalidator.class);
+
+    @Inject
+    OrderNearCache orderNearCache;
+
+    @Inject
+    ObjectMapper mapper;
+
+    @Incoming("order-updated-invalidations")
+    public void receiveOrderUpdated(String eventMessage) {
+        invalidate(eventMessage);
+    }
+
+    @Incoming("order-deleted-invalidations")
+    public void receiveOrderDeleted(String eventMessage) {
+        invalidate(eventMessage);
+    }
+
+    private void invalidate(String eventMessage) {
+        try {
+            JsonNode event = mapper.readTree(eventMessage);
+            orderNearCache.invalidate(event.get("orderId").asText());
+        } catch (Exception e) {
+            LOG.errorf(e, "Failed to process order event: %s", eventMessage);
+        }
+    }
+}
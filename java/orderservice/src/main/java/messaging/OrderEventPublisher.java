@@ -1,84 +1,310 @@
 package messaging;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import events.OrderCreatedEvent;
+import events.OrderDeletedEvent;
+import events.OrderStatusChangedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.smallrye.mutiny.Uni;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.event.Event;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import models.OrderStatus;
+import models.OrderView;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.reactive.messaging.Channel;
 import org.eclipse.microprofile.reactive.messaging.Emitter;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import org.eclipse.microprofile.reactive.messaging.OnOverflow;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import org.jboss.logging.Logger;
 
-import java.util.HashMap;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
+import java.util.Queue;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @ApplicationScoped
 public class OrderEventPublisher {
 
+    private static final Logger LOG = Logger.getLogger(OrderEventPublisher.class);
+
+    // The outbound buffer below is the only bound; emitters just hand messages to the connector
     @Inject
     @Channel("order-created-events")
+    @OnOverflow(OnOverflow.Strategy.UNBOUNDED_BUFFER)
     Emitter<String> orderCreatedEmitter;
 
     @Inject
     @Channel("order-updated-events")
+    @OnOverflow(OnOverflow.Strategy.UNBOUNDED_BUFFER)
     Emitter<String> orderUpdatedEmitter;
 
     @Inject
     @Channel("order-deleted-events")
+    @OnOverflow(OnOverflow.Strategy.UNBOUNDED_BUFFER)
     Emitter<String> orderDeletedEmitter;
 
     @Inject
     ObjectMapper mapper;
 
+    @Inject
+    TransactionSynchronizationRegistry transactionRegistry;
+
+    @Inject
+    MeterRegistry meterRegistry;
+
+    @Inject
+    Event<OrderCreatedEvent> orderCreatedEvent;
+
+    @Inject
+    Event<OrderStatusChangedEvent> orderStatusChangedEvent;
+
+    @Inject
+    Event<OrderDeletedEvent> orderDeletedEvent;
+
+    @ConfigProperty(name = "order-events.publisher.buffer-size", defaultValue = "10000")
+    int bufferSize;
+
+    @ConfigProperty(name = "order-events.publisher.max-in-flight", defaultValue = "256")
+    int maxInFlight;
+
+    @ConfigProperty(name = "order-events.publisher.max-attempts", defaultValue = "5")
+    int maxAttempts;
+
+    @ConfigProperty(name = "order-events.publisher.retry-backoff", defaultValue = "500ms")
+    Duration retryBackoff;
+
+    private ObjectWriter orderCreatedWriter;
+    private ObjectWriter orderUpdatedWriter;
+    private ObjectWriter orderDeletedWriter;
+
+    private Semaphore capacity;
+    private final Queue<PendingEvent> outbound = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private Timer confirmLatency;
+    private Counter rejected;
+    private Counter retried;
+    private Counter failed;
+
     public enum EventType {
         OrderCreated, OrderUpdated, OrderDeleted
     }
 
+    public record OrderCreatedMessage(String type, String orderId, String userId, String createdAt,
+                                      List<OrderItemMessage> items) {}
+
+    public record OrderUpdatedMessage(String type, String orderId, String status) {}
+
+    public record OrderDeletedMessage(String type, String orderId, String status, String createdAt,
+                                      List<OrderItemMessage> items) {}
+
+    public record OrderItemMessage(String productId, int quantity) {}
+
+    @PostConstruct
+    void init() {
+        orderCreatedWriter = mapper.writerFor(OrderCreatedMessage.class);
+        orderUpdatedWriter = mapper.writerFor(OrderUpdatedMessage.class);
+        orderDeletedWriter = mapper.writerFor(OrderDeletedMessage.class);
+
+        capacity = new Semaphore(bufferSize);
+
+        Gauge.builder("order.events.buffer.depth", () -> bufferSize - capacity.availablePermits())
+                .description("Order events accepted but not yet confirmed by the broker")
+                .register(meterRegistry);
+        Gauge.builder("order.events.in.flight", inFlight::get)
+                .description("Order events published and awaiting a broker confirm")
+                .register(meterRegistry);
+        confirmLatency = Timer.builder("order.events.confirm.latency")
+                .description("Time from publishing an order event to its broker confirm")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        rejected = meterRegistry.counter("order.events.rejected");
+        retried = meterRegistry.counter("order.events.retried");
+        failed = meterRegistry.counter("order.events.failed");
+    }
+
     public void publishOrderCreated(models.Order order) {
-        Map<String, Object> event = new HashMap<>();
-        event.put("type", EventType.OrderCreated.name());
-        event.put("orderId", order.id.toString());
-        event.put("userId", order.userId.toString());
-        event.put("items", buildItems(order));
+        orderCreatedEvent.fire(new OrderCreatedEvent(order));
 
-        sendEvent(orderCreatedEmitter, event);
+        enqueue(orderCreatedEmitter, orderCreatedWriter, List.of(new OrderCreatedMessage(
+                EventType.OrderCreated.name(),
+                order.id.toString(),
+                order.userId.toString(),
+                order.createdAt.toString(),
+                buildItems(order))));
     }
 
     public void publishOrderUpdated(UUID orderId, String status) {
-        Map<String, Object> event = new HashMap<>();
-        event.put("type", EventType.OrderUpdated.name());
-        event.put("orderId", orderId.toString());
-        event.put("status", status);
+        publishOrderUpdates(List.of(orderId), status);
+    }
+
+    public void publishOrderUpdates(Collection<UUID> orderIds, String status) {
+        if (orderIds.isEmpty()) {
+            return;
+        }
+        orderStatusChangedEvent.fire(new OrderStatusChangedEvent(orderIds, OrderStatus.valueOf(status)));
 
-        sendEvent(orderUpdatedEmitter, event);
+        List<OrderUpdatedMessage> messages = new ArrayList<>(orderIds.size());
+        for (UUID orderId : orderIds) {
+            messages.add(new OrderUpdatedMessage(EventType.OrderUpdated.name(), orderId.toString(), status));
+        }
+
+        enqueue(orderUpdatedEmitter, orderUpdatedWriter, messages);
     }
 
-    public void publishOrderDeleted(models.Order order) {
-        Map<String, Object> event = new HashMap<>();
-        event.put("type", EventType.OrderDeleted.name());
-        event.put("orderId", order.id.toString());
-        event.put("status", order.status != null ? order.status.name() : "UNKNOWN");
-        event.put("items", buildItems(order));
+    public void publishOrderDeleted(OrderView order) {
+        orderDeletedEvent.fire(new OrderDeletedEvent(order.id, order.createdAt, order.items));
 
-        sendEvent(orderDeletedEmitter, event);
+        enqueue(orderDeletedEmitter, orderDeletedWriter, List.of(new OrderDeletedMessage(
+                EventType.OrderDeleted.name(),
+                order.id.toString(),
+                order.status != null ? order.status.name() : "UNKNOWN",
+                order.createdAt != null ? order.createdAt.toString() : null,
+                order.items.stream()
+                        .map(item -> new OrderItemMessage(item.productId().toString(), item.quantity()))
+                        .toList())));
     }
 
-    private List<Map<String, Object>> buildItems(models.Order order) {
+    private List<OrderItemMessage> buildItems(models.Order order) {
         return order.items.stream()
-                .map(item -> {
-                    Map<String, Object> map = new HashMap<>();
-                    map.put("productId", item.productId.toString());
-                    map.put("quantity", item.quantity);
-                    return map;
-                })
+                .map(item -> new OrderItemMessage(item.productId.toString(), item.quantity))
                 .toList();
     }
 
-    private void sendEvent(Emitter<String> emitter, Map<String, Object> event) {
+    // Slots are reserved inside the caller's transaction, so a full buffer fails the write instead of
+    // blocking it or dropping events; the events themselves are only released to the broker after commit
+    private void enqueue(Emitter<String> emitter, ObjectWriter writer, List<?> events) {
+        List<PendingEvent> pending = new ArrayList<>(events.size());
+        for (Object event : events) {
+            try {
+                pending.add(new PendingEvent(emitter, writer.writeValueAsString(event)));
+            } catch (JsonProcessingException e) {
+                throw new RuntimeException("Failed to serialize order event: " + event, e);
+            }
+        }
+
+        if (!capacity.tryAcquire(pending.size())) {
+            rejected.increment(pending.size());
+            throw new IllegalStateException("Order event buffer is full, try again later");
+        }
+
+        if (transactionRegistry.getTransactionKey() == null) {
+            submit(pending);
+            return;
+        }
+
+        transactionRegistry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    submit(pending);
+                } else {
+                    capacity.release(pending.size());
+                }
+            }
+        });
+    }
+
+    private void submit(List<PendingEvent> events) {
+        outbound.addAll(events);
+        drain();
+    }
+
+    private void drain() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= maxInFlight) {
+                return;
+            }
+            if (!inFlight.compareAndSet(current, current + 1)) {
+                continue;
+            }
+
+            PendingEvent next = outbound.poll();
+            if (next == null) {
+                inFlight.decrementAndGet();
+                if (outbound.isEmpty()) {
+                    return;
+                }
+                continue;
+            }
+            send(next);
+        }
+    }
+
+    // The channels run with publish-confirms, so ack and nack map to the broker's confirm for this message
+    private void send(PendingEvent event) {
+        event.attempts++;
+        long startedAt = System.nanoTime();
+
+        Message<String> message = Message.of(event.payload)
+                .withAck(() -> {
+                    confirmLatency.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                    inFlight.decrementAndGet();
+                    capacity.release();
+                    drain();
+                    return CompletableFuture.completedFuture(null);
+                })
+                .withNack(failure -> {
+                    inFlight.decrementAndGet();
+                    retry(event, failure);
+                    return CompletableFuture.completedFuture(null);
+                });
+
         try {
-            String eventMessage = mapper.writeValueAsString(event);
-            emitter.send(eventMessage);
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to serialize order event: " + event, e);
+            event.emitter.send(message);
+        } catch (RuntimeException e) {
+            inFlight.decrementAndGet();
+            retry(event, e);
+        }
+    }
+
+    private void retry(PendingEvent event, Throwable failure) {
+        if (event.attempts >= maxAttempts) {
+            failed.increment();
+            capacity.release();
+            LOG.errorf(failure, "Giving up on order event after %d attempts: %s", event.attempts, event.payload);
+            drain();
+            return;
+        }
+
+        retried.increment();
+        LOG.warnf("Order event not confirmed (attempt %d), retrying: %s", event.attempts, failure.getMessage());
+        Uni.createFrom().voidItem()
+                .onItem().delayIt().by(retryBackoff.multipliedBy(event.attempts))
+                .subscribe().with(ignored -> submit(List.of(event)));
+        drain();
+    }
+
+    private static class PendingEvent {
+        final Emitter<String> emitter;
+        final String payload;
+        int attempts;
+
+        PendingEvent(Emitter<String> emitter, String payload) {
+            this.emitter = emitter;
+            this.payload = payload;
         }
     }
 }
@@ -0,0 +1,52 @@
+package messaging;
+
+import events.OrderCreatedEvent;
+import events.OrderDeletedEvent;
+import events.OrderStatusChangedEvent;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import models.OrderView;
+import org.jboss.logging.Logger;
+
+@ApplicationScoped
+public class OrderViewProjector {
+
+    private static final Logger LOG = Logger.getLogger(OrderViewProjector.class);
+
+    @Inject
+    EntityManager entityManager;
+
+    // Observers run synchronously inside the publishing transaction, so the view commits with the write
+    void onOrderCreated(@Observes OrderCreatedEvent event) {
+        OrderView.from(event.order()).persist();
+    }
+
+    void onOrderStatusChanged(@Observes OrderStatusChangedEvent event) {
+        OrderView.update("status = ?1 where id in ?2", event.status(), event.orderIds());
+    }
+
+    void onOrderDeleted(@Observes OrderDeletedEvent event) {
+        OrderView.deleteById(event.orderId());
+    }
+
+    void backfill(@Observes StartupEvent event) {
+        int inserted = QuarkusTransaction.requiringNew().call(() -> entityManager.createNativeQuery("""
+                INSERT INTO order_view (id, userId, status, createdAt, deliveryAddress, paymentType, items)
+                SELECT o.id, o.userId, o.status, o.createdAt, o.deliveryAddress, o.paymentType,
+                       COALESCE((SELECT jsonb_agg(jsonb_build_object('productId', i.productId, 'quantity', i.quantity))
+                                 FROM order_items i
+                                 WHERE i.order_id = o.id), '[]'::jsonb)
+                FROM orders o
+                WHERE o.deletedAt IS NULL
+                  AND NOT EXISTS (SELECT 1 FROM order_view v WHERE v.id = o.id)
+                """).executeUpdate());
+
+        if (inserted > 0) {
+            LOG.infof("Order view backfilled with %d orders", inserted);
+        }
+    }
+}
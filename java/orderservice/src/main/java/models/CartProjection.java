@@ -0,0 +1,26 @@
+package models;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
+import jakarta.persistence.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+@Entity
+@Table(name = "cart_projections")
+public class CartProjection extends PanacheEntityBase {
+
+    @Id
+    @Column(columnDefinition = "uuid", updatable = false, nullable = false)
+    public UUID userId;
+
+    @Column(nullable = false)
+    public long lastSequence;
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(columnDefinition = "jsonb", nullable = false)
+    public List<CartProjectionItem> items = new ArrayList<>();
+}
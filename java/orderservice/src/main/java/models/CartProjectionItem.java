@@ -0,0 +1,8 @@
+package models;
+
+import java.util.UUID;
+
+public record CartProjectionItem(
+        UUID productId,
+        int quantity
+) {}
@@ -3,17 +3,22 @@ package models;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
 import jakarta.persistence.*;
+import org.hibernate.annotations.SQLRestriction;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Entity
 @Table(name = "orders")
+@SQLRestriction("deletedAt is null")
 public class Order extends PanacheEntityBase {
 
     @Id
-    @GeneratedValue
+    @TimeOrderedUuid
     @Column(columnDefinition = "uuid", updatable = false, nullable = false)
     public UUID id;
 
@@ -34,7 +39,50 @@ public class Order extends PanacheEntityBase {
     @Enumerated(EnumType.STRING)
     public PaymentType paymentType;
 
+    public LocalDateTime deletedAt;
+
     @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.EAGER)
     @JsonManagedReference
     public List<OrderItem> items = new ArrayList<>();
+
+    // Guarded by the state machine in the WHERE clause, so illegal and lost-race transitions match no row
+    @SuppressWarnings("unchecked")
+    public static List<UUID> transitionStatus(Collection<UUID> ids, OrderStatus target) {
+        if (ids.isEmpty() || target.sources().isEmpty()) {
+            return List.of();
+        }
+        return getEntityManager().createNativeQuery("""
+                        UPDATE orders SET status = :target
+                        WHERE id IN (:ids) AND status IN (:sources) AND deletedAt IS NULL
+                        RETURNING id
+                        """, UUID.class)
+                .setParameter("target", target.name())
+                .setParameter("ids", ids)
+                .setParameter("sources", target.sources().stream().map(Enum::name).toList())
+                .getResultList();
+    }
+
+    public static boolean softDelete(UUID id) {
+        return update("deletedAt = ?1 where id = ?2 and deletedAt is null", LocalDateTime.now(), id) > 0;
+    }
+
+    public static OrderStatus findStatus(UUID id) {
+        return getEntityManager()
+                .createQuery("select o.status from Order o where o.id = :id", OrderStatus.class)
+                .setParameter("id", id)
+                .getResultStream()
+                .findFirst()
+                .orElse(null);
+    }
+
+    public static Map<UUID, OrderStatus> findStatuses(Collection<UUID> ids) {
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        return getEntityManager()
+                .createQuery("select o.id, o.status from Order o where o.id in :ids", Object[].class)
+                .setParameter("ids", ids)
+                .getResultStream()
+                .collect(Collectors.toMap(row -> (UUID) row[0], row -> (OrderStatus) row[1]));
+    }
 }
\ No newline at end of file
@@ -3,6 +3,7 @@ package models;
 import com.fasterxml.jackson.annotation.JsonBackReference;
 import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
 import jakarta.persistence.*;
+import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
@@ -10,7 +11,7 @@ import java.util.UUID;
 public class OrderItem extends PanacheEntityBase {
 
     @Id
-    @GeneratedValue
+    @TimeOrderedUuid
     @Column(columnDefinition = "uuid", updatable = false, nullable = false)
     public UUID id;
 
@@ -19,9 +20,18 @@ public class OrderItem extends PanacheEntityBase {
     @JsonBackReference
     public Order order;
 
+    // Copy of the order's createdAt, which is the partition key of order_items
+    @Column(nullable = false)
+    public LocalDateTime createdAt;
+
     @Column(nullable = false)
     public UUID productId;
 
     @Column(nullable = false)
     public int quantity;
+
+    @PrePersist
+    void inheritOrderCreatedAt() {
+        createdAt = order.createdAt;
+    }
 }
\ No newline at end of file
@@ -1,8 +1,25 @@
 package models;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 public enum OrderStatus {
     PENDING,
     PROCESSING,
     DELIVERED,
-    CANCELLED
-}
\ No newline at end of file
+    CANCELLED;
+
+    private Set<OrderStatus> sources;
+
+    static {
+        PENDING.sources = EnumSet.noneOf(OrderStatus.class);
+        PROCESSING.sources = EnumSet.of(PENDING);
+        DELIVERED.sources = EnumSet.of(PROCESSING);
+        CANCELLED.sources = EnumSet.of(PENDING, PROCESSING);
+    }
+
+    // Statuses an order may be in for a transition to this one to be allowed
+    public Set<OrderStatus> sources() {
+        return sources;
+    }
+}
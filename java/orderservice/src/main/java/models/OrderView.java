@@ -0,0 +1,59 @@
+package models;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
+import jakarta.persistence.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+@Entity
+@Table(name = "order_view", indexes = {
+        @Index(name = "idx_order_view_created_at_id", columnList = "createdAt, id"),
+        @Index(name = "idx_order_view_user_created_at_id", columnList = "userId, createdAt, id"),
+        @Index(name = "idx_order_view_status_created_at_id", columnList = "status, createdAt, id")
+})
+public class OrderView extends PanacheEntityBase {
+
+    @Id
+    @Column(columnDefinition = "uuid", updatable = false, nullable = false)
+    public UUID id;
+
+    @Column(nullable = false)
+    public UUID userId;
+
+    @Column(nullable = false)
+    @Enumerated(EnumType.STRING)
+    public OrderStatus status;
+
+    @Column(nullable = false)
+    public LocalDateTime createdAt;
+
+    @Column(length = 500)
+    public String deliveryAddress;
+
+    @Column(length = 50)
+    @Enumerated(EnumType.STRING)
+    public PaymentType paymentType;
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(columnDefinition = "jsonb", nullable = false)
+    public List<OrderViewItem> items = new ArrayList<>();
+
+    public static OrderView from(Order order) {
+        OrderView view = new OrderView();
+        view.id = order.id;
+        view.userId = order.userId;
+        view.status = order.status;
+        view.createdAt = order.createdAt;
+        view.deliveryAddress = order.deliveryAddress;
+        view.paymentType = order.paymentType;
+        view.items = order.items.stream()
+                .map(item -> new OrderViewItem(item.productId, item.quantity))
+                .toList();
+        return view;
+    }
+}
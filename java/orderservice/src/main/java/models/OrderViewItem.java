@@ -0,0 +1,8 @@
+package models;
+
+import java.util.UUID;
+
+public record OrderViewItem(
+        UUID productId,
+        int quantity
+) {}
@@ -0,0 +1,110 @@
+package ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Priority;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.Priorities;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.ext.Provider;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import security.JwtUtils;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// Rejects over-limit requests before they reach the resource, so a retry storm costs
+// neither a worker thread in the service nor a database connection
+@Provider
+@RateLimited
+@Priority(Priorities.USER)
+public class RateLimitFilter implements ContainerRequestFilter {
+
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    @Inject
+    JwtUtils jwtUtils;
+
+    @Inject
+    MeterRegistry meterRegistry;
+
+    @ConfigProperty(name = "rate-limit.user.rate", defaultValue = "5")
+    double userRate;
+
+    @ConfigProperty(name = "rate-limit.user.burst", defaultValue = "10")
+    int userBurst;
+
+    @ConfigProperty(name = "rate-limit.global.rate", defaultValue = "500")
+    double globalRate;
+
+    @ConfigProperty(name = "rate-limit.global.burst", defaultValue = "1000")
+    int globalBurst;
+
+    @ConfigProperty(name = "rate-limit.max-users", defaultValue = "100000")
+    long maxUsers;
+
+    @ConfigProperty(name = "rate-limit.idle-expiry", defaultValue = "10m")
+    Duration idleExpiry;
+
+    private Cache<UUID, TokenBucket> userBuckets;
+    private TokenBucket globalBucket;
+    private Counter userRejected;
+    private Counter globalRejected;
+
+    public record ErrorResponse(int status, String message) {}
+
+    @PostConstruct
+    void init() {
+        // A bucket idle for longer than it takes to refill is full again, so dropping it loses nothing
+        userBuckets = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfterAccess(idleExpiry)
+                .build();
+        globalBucket = new TokenBucket(globalRate, globalBurst);
+        userRejected = meterRegistry.counter("http.requests.rate.limited", "scope", "user");
+        globalRejected = meterRegistry.counter("http.requests.rate.limited", "scope", "global");
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        UUID userId = jwtUtils.getUserId();
+        TokenBucket userBucket = userBuckets.get(userId, id -> new TokenBucket(userRate, userBurst));
+
+        long wait = userBucket.tryAcquire();
+        if (wait > 0) {
+            userRejected.increment();
+            reject(requestContext, wait, "Too many requests, slow down");
+            return;
+        }
+
+        // Checked second so one user over their limit cannot drain the global budget; a request turned away here
+        // never reached the resource, so the user gets their token back
+        wait = globalBucket.tryAcquire();
+        if (wait > 0) {
+            userBucket.refund();
+            globalRejected.increment();
+            reject(requestContext, wait, "Service is busy, try again later");
+        }
+    }
+
+    private static void reject(ContainerRequestContext requestContext, long waitNanos, String message) {
+        requestContext.abortWith(Response.status(TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds(waitNanos))
+                .entity(new ErrorResponse(TOO_MANY_REQUESTS, message))
+                .type(MediaType.APPLICATION_JSON)
+                .build());
+    }
+
+    // Retry-After is whole seconds, so the wait is rounded up: a client that waits that long finds a token
+    static long retryAfterSeconds(long waitNanos) {
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L));
+    }
+}
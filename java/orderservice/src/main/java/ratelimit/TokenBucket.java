@@ -0,0 +1,46 @@
+package ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+// Token bucket kept as a single "theoretical arrival time" (GCRA), so taking a token is one CAS
+// and an idle bucket needs no refill work
+public class TokenBucket {
+
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final LongSupplier clock;
+    private final AtomicLong nextFreeAt;
+
+    public TokenBucket(double tokensPerSecond, int burst) {
+        this(tokensPerSecond, burst, System::nanoTime);
+    }
+
+    TokenBucket(double tokensPerSecond, int burst, LongSupplier clock) {
+        this.intervalNanos = (long) (1_000_000_000L / tokensPerSecond);
+        this.burstNanos = intervalNanos * burst;
+        this.clock = clock;
+        this.nextFreeAt = new AtomicLong(clock.getAsLong());
+    }
+
+    // Returns 0 when a token was taken, otherwise how long until one is available
+    public long tryAcquire() {
+        while (true) {
+            long now = clock.getAsLong();
+            long current = nextFreeAt.get();
+            long next = Math.max(current, now) + intervalNanos;
+            long wait = next - now - burstNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (nextFreeAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    // Gives back a token taken by tryAcquire when the request was turned away for another reason
+    public void refund() {
+        nextFreeAt.addAndGet(-intervalNanos);
+    }
+}
@@ -0,0 +1,112 @@
+package resources;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.protobuf.Message;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.ext.MessageBodyWriter;
+import jakarta.ws.rs.ext.Provider;
+import org.vladyslavplus.orderservice.Order;
+import org.vladyslavplus.orderservice.OrderItem;
+import org.vladyslavplus.orderservice.OrdersPage;
+import org.vladyslavplus.orderservice.OrdersResponse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+// Streams protobuf orders straight into the OrderDto JSON shape, without building a DTO graph first
+@Provider
+@Produces(MediaType.APPLICATION_JSON)
+public class OrderJsonWriter implements MessageBodyWriter<Message> {
+
+    private static final SerializableString ID = new SerializedString("id");
+    private static final SerializableString USER_ID = new SerializedString("userId");
+    private static final SerializableString DELIVERY_ADDRESS = new SerializedString("deliveryAddress");
+    private static final SerializableString PAYMENT_TYPE = new SerializedString("paymentType");
+    private static final SerializableString STATUS = new SerializedString("status");
+    private static final SerializableString CREATED_AT = new SerializedString("createdAt");
+    private static final SerializableString ITEMS = new SerializedString("items");
+    private static final SerializableString PRODUCT_ID = new SerializedString("productId");
+    private static final SerializableString QUANTITY = new SerializedString("quantity");
+    private static final SerializableString ORDERS = new SerializedString("orders");
+    private static final SerializableString NEXT_CURSOR = new SerializedString("nextCursor");
+
+    @Inject
+    ObjectMapper mapper;
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return type == Order.class || type == OrdersResponse.class || type == OrdersPage.class;
+    }
+
+    @Override
+    public void writeTo(Message message, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                        MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException {
+        JsonFactory factory = mapper.getFactory();
+        try (JsonGenerator json = factory.createGenerator(entityStream)) {
+            json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+            if (message instanceof Order order) {
+                writeOrder(json, order);
+            } else if (message instanceof OrdersResponse response) {
+                json.writeStartArray();
+                for (Order order : response.getOrdersList()) {
+                    writeOrder(json, order);
+                }
+                json.writeEndArray();
+            } else if (message instanceof OrdersPage page) {
+                json.writeStartObject();
+                json.writeFieldName(ORDERS);
+                json.writeStartArray();
+                for (Order order : page.getOrdersList()) {
+                    writeOrder(json, order);
+                }
+                json.writeEndArray();
+                json.writeFieldName(NEXT_CURSOR);
+                if (page.getNextPageToken().isEmpty()) {
+                    json.writeNull();
+                } else {
+                    json.writeString(page.getNextPageToken());
+                }
+                json.writeEndObject();
+            }
+        }
+    }
+
+    private static void writeOrder(JsonGenerator json, Order order) throws IOException {
+        json.writeStartObject();
+        json.writeFieldName(ID);
+        json.writeString(order.getId());
+        json.writeFieldName(USER_ID);
+        json.writeString(order.getUserId());
+        json.writeFieldName(DELIVERY_ADDRESS);
+        json.writeString(order.getDeliveryAddress());
+        json.writeFieldName(PAYMENT_TYPE);
+        json.writeString(order.getPaymentType());
+        json.writeFieldName(STATUS);
+        json.writeString(order.getStatus());
+        json.writeFieldName(CREATED_AT);
+        json.writeString(order.getCreatedAtString());
+
+        json.writeFieldName(ITEMS);
+        json.writeStartArray();
+        for (OrderItem item : order.getItemsList()) {
+            json.writeStartObject();
+            json.writeFieldName(PRODUCT_ID);
+            json.writeString(item.getProductId());
+            json.writeFieldName(QUANTITY);
+            json.writeNumber(item.getQuantity());
+            json.writeEndObject();
+        }
+        json.writeEndArray();
+        json.writeEndObject();
+    }
+}
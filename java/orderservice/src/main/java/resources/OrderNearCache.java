@@ -0,0 +1,65 @@
+package resources;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import events.OrderDeletedEvent;
+import events.OrderStatusChangedEvent;
+import io.quarkus.grpc.GrpcClient;
+import io.smallrye.mutiny.Uni;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.vladyslavplus.orderservice.Order;
+import org.vladyslavplus.orderservice.OrderIdRequest;
+import org.vladyslavplus.orderservice.OrderService;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.UUID;
+
+// Concurrent misses for an id share one pending load, and invalidating an id also discards its pending load
+@ApplicationScoped
+public class OrderNearCache {
+
+    @GrpcClient("order")
+    OrderService orderService;
+
+    @ConfigProperty(name = "order-cache.max-size", defaultValue = "10000")
+    long maxSize;
+
+    @ConfigProperty(name = "order-cache.ttl", defaultValue = "5m")
+    Duration ttl;
+
+    private AsyncCache<String, Order> cache;
+
+    @PostConstruct
+    void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .buildAsync();
+    }
+
+    public Uni<Order> get(String orderId) {
+        return Uni.createFrom().completionStage(() -> cache.get(orderId.toLowerCase(Locale.ROOT), (id, executor) ->
+                orderService.getOrderById(OrderIdRequest.newBuilder().setOrderId(id).build())
+                        .subscribeAsCompletionStage()));
+    }
+
+    public void invalidate(String orderId) {
+        cache.synchronous().invalidate(orderId.toLowerCase(Locale.ROOT));
+    }
+
+    // Writes on this replica invalidate right after commit; other replicas hear about them from the broker
+    void onOrderStatusChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) OrderStatusChangedEvent event) {
+        for (UUID orderId : event.orderIds()) {
+            invalidate(orderId.toString());
+        }
+    }
+
+    void onOrderDeleted(@Observes(during = TransactionPhase.AFTER_SUCCESS) OrderDeletedEvent event) {
+        invalidate(event.orderId().toString());
+    }
+}
@@ -1,18 +1,24 @@
 package resources;
 
+import analytics.OrderAnalytics;
 import dtos.*;
 import io.quarkus.grpc.GrpcClient;
+import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponseSchema;
 import org.eclipse.microprofile.openapi.annotations.security.SecurityRequirement;
+import org.jboss.resteasy.reactive.RestStreamElementType;
+import org.jboss.resteasy.reactive.common.util.RestMediaType;
 import org.vladyslavplus.orderservice.*;
+import ratelimit.RateLimited;
 import security.JwtUtils;
 
+import java.time.Duration;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Path("api/orders")
 @RolesAllowed({"Admin", "User"})
@@ -27,26 +33,71 @@ public class OrderResource {
     @Inject
     JwtUtils jwtUtils;
 
+    @Inject
+    OrderAnalytics orderAnalytics;
+
+    @Inject
+    OrderNearCache orderNearCache;
+
+    @GET
+    @Path("/analytics")
+    @RolesAllowed("Admin")
+    public OrderAnalyticsDto getAnalytics(@QueryParam("minutes") @DefaultValue("60") int minutes,
+                                          @QueryParam("limit") @DefaultValue("10") int limit) {
+        return orderAnalytics.snapshot(Duration.ofMinutes(Math.max(1, minutes)), Math.max(1, Math.min(limit, 100)));
+    }
+
     @GET
     @Path("/{id}")
-    public Uni<OrderDto> getOrderById(@PathParam("id") String id) {
-        OrderIdRequest request = OrderIdRequest.newBuilder()
-                .setOrderId(id)
-                .build();
-        return orderService.getOrderById(request)
-                .map(this::convertToDto);
+    @APIResponseSchema(OrderDto.class)
+    public Uni<Order> getOrderById(@PathParam("id") String id) {
+        return orderNearCache.get(id);
+    }
+
+    @GET
+    @RolesAllowed("Admin")
+    @APIResponseSchema(OrderDto[].class)
+    public Uni<OrdersResponse> getAllOrders() {
+        return orderService.getAllOrders(com.google.protobuf.Empty.getDefaultInstance());
+    }
+
+    @GET
+    @Path("/my")
+    @APIResponseSchema(OrdersPageDto.class)
+    public Uni<OrdersPage> getMyOrders(@QueryParam("cursor") String cursor,
+                                          @QueryParam("status") List<String> statuses,
+                                          @QueryParam("limit") @DefaultValue("0") int limit) {
+        String userId = jwtUtils.getUserId().toString();
+        return listOrders(userId, cursor, statuses, limit);
     }
 
     @GET
-    public Uni<List<OrderDto>> getAllOrders() {
-        return orderService.getAllOrders(com.google.protobuf.Empty.getDefaultInstance())
-                .map(response -> response.getOrdersList().stream()
-                        .map(this::convertToDto)
-                        .collect(Collectors.toList()));
+    @Path("/paged")
+    @RolesAllowed("Admin")
+    @APIResponseSchema(OrdersPageDto.class)
+    public Uni<OrdersPage> getOrdersPage(@QueryParam("userId") String userId,
+                                            @QueryParam("cursor") String cursor,
+                                            @QueryParam("status") List<String> statuses,
+                                            @QueryParam("limit") @DefaultValue("0") int limit) {
+        return listOrders(userId, cursor, statuses, limit);
+    }
+
+    @GET
+    @Path("/export")
+    @RolesAllowed("Admin")
+    @Produces(RestMediaType.APPLICATION_NDJSON)
+    @RestStreamElementType(MediaType.APPLICATION_JSON)
+    public Multi<Order> exportOrders(@QueryParam("batchSize") @DefaultValue("0") int batchSize) {
+        ExportOrdersRequest request = ExportOrdersRequest.newBuilder()
+                .setBatchSize(batchSize)
+                .build();
+        return orderService.exportOrders(request);
     }
 
     @POST
-    public Uni<OrderDto> createOrder(CreateOrderDto dto) {
+    @RateLimited
+    @APIResponseSchema(OrderDto.class)
+    public Uni<Order> createOrder(CreateOrderDto dto) {
         String userId = jwtUtils.getUserId().toString();
 
         CreateOrderRequest request = CreateOrderRequest.newBuilder()
@@ -55,19 +106,32 @@ public class OrderResource {
                 .setPaymentType(dto.paymentType != null ? dto.paymentType : "")
                 .build();
 
-        return orderService.createOrder(request)
-                .map(this::convertToDto);
+        return orderService.createOrder(request);
     }
 
     @PUT
     @Path("/{id}/status")
-    public Uni<OrderDto> updateStatus(@PathParam("id") String id, UpdateStatusDto dto) {
+    @APIResponseSchema(OrderDto.class)
+    public Uni<Order> updateStatus(@PathParam("id") String id, UpdateStatusDto dto) {
         UpdateOrderStatusRequest req = UpdateOrderStatusRequest.newBuilder()
                 .setOrderId(id)
                 .setStatus(dto.status)
                 .build();
-        return orderService.updateOrderStatus(req)
-                .map(this::convertToDto);
+        return orderService.updateOrderStatus(req);
+    }
+
+    @PUT
+    @Path("/status")
+    @RolesAllowed("Admin")
+    public Uni<BulkUpdateStatusResponse> bulkUpdateStatus(BulkUpdateStatusDto dto) {
+        BulkUpdateOrderStatusRequest req = BulkUpdateOrderStatusRequest.newBuilder()
+                .addAllOrderIds(dto.orderIds != null ? dto.orderIds : List.of())
+                .setStatus(dto.status)
+                .build();
+        return orderService.bulkUpdateOrderStatus(req)
+                .map(response -> new BulkUpdateStatusResponse(
+                        response.getUpdatedOrderIdsList(),
+                        response.getRejectedOrderIdsList()));
     }
 
     @DELETE
@@ -80,24 +144,14 @@ public class OrderResource {
                 .map(empty -> new DeleteResponse("Order deleted successfully"));
     }
 
-    private OrderDto convertToDto(Order order) {
-        OrderDto dto = new OrderDto();
-        dto.id = order.getId();
-        dto.userId = order.getUserId();
-        dto.deliveryAddress = order.getDeliveryAddress();
-        dto.paymentType = order.getPaymentType();
-        dto.status = order.getStatus();
-        dto.createdAt = order.getCreatedAtString();
-
-        dto.items = order.getItemsList().stream()
-                .map(item -> {
-                    var itemDto = new OrderItemDto();
-                    itemDto.productId = item.getProductId();
-                    itemDto.quantity = item.getQuantity();
-                    return itemDto;
-                })
-                .collect(Collectors.toList());
-
-        return dto;
+    private Uni<OrdersPage> listOrders(String userId, String cursor, List<String> statuses, int limit) {
+        ListOrdersRequest request = ListOrdersRequest.newBuilder()
+                .setUserId(userId != null ? userId : "")
+                .setPageToken(cursor != null ? cursor : "")
+                .addAllStatuses(statuses != null ? statuses : List.of())
+                .setPageSize(limit)
+                .build();
+
+        return orderService.listOrders(request);
     }
 }
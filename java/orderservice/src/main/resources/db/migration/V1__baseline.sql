@@ -0,0 +1,40 @@
+-- Schema as previously generated by Hibernate; IF NOT EXISTS lets this run against existing databases
+CREATE TABLE IF NOT EXISTS orders (
+    id              uuid         NOT NULL,
+    userId          uuid         NOT NULL,
+    status          varchar(255) NOT NULL,
+    createdAt       timestamp(6) NOT NULL,
+    deliveryAddress varchar(500),
+    paymentType     varchar(50),
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS order_items (
+    id        uuid    NOT NULL,
+    order_id  uuid    NOT NULL REFERENCES orders (id),
+    productId uuid    NOT NULL,
+    quantity  integer NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS order_view (
+    id              uuid         NOT NULL,
+    userId          uuid         NOT NULL,
+    status          varchar(255) NOT NULL,
+    createdAt       timestamp(6) NOT NULL,
+    deliveryAddress varchar(500),
+    paymentType     varchar(50),
+    items           jsonb        NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_order_view_created_at_id ON order_view (createdAt, id);
+CREATE INDEX IF NOT EXISTS idx_order_view_user_created_at_id ON order_view (userId, createdAt, id);
+CREATE INDEX IF NOT EXISTS idx_order_view_status_created_at_id ON order_view (status, createdAt, id);
+
+CREATE TABLE IF NOT EXISTS cart_projections (
+    userId       uuid   NOT NULL,
+    lastSequence bigint NOT NULL,
+    items        jsonb  NOT NULL,
+    PRIMARY KEY (userId)
+);
@@ -0,0 +1,54 @@
+-- Monthly range partitions on createdAt. The partition key has to be part of every unique constraint,
+-- so order_items carries its order's createdAt and the cross-table foreign key is dropped.
+CREATE SCHEMA IF NOT EXISTS orders_archive;
+
+ALTER TABLE order_items RENAME TO order_items_unpartitioned;
+ALTER TABLE orders RENAME TO orders_unpartitioned;
+
+CREATE TABLE orders (
+    id              uuid         NOT NULL,
+    userId          uuid         NOT NULL,
+    status          varchar(255) NOT NULL,
+    createdAt       timestamp(6) NOT NULL,
+    deliveryAddress varchar(500),
+    paymentType     varchar(50),
+    deletedAt       timestamp(6),
+    PRIMARY KEY (id, createdAt)
+) PARTITION BY RANGE (createdAt);
+
+CREATE TABLE order_items (
+    id        uuid         NOT NULL,
+    order_id  uuid         NOT NULL,
+    createdAt timestamp(6) NOT NULL,
+    productId uuid         NOT NULL,
+    quantity  integer      NOT NULL,
+    PRIMARY KEY (id, createdAt)
+) PARTITION BY RANGE (createdAt);
+
+CREATE INDEX idx_order_items_order_id ON order_items (order_id);
+
+DO $$
+DECLARE
+    month timestamp := date_trunc('month', LEAST(COALESCE((SELECT min(createdAt) FROM orders_unpartitioned), now()), now()));
+    last  timestamp := date_trunc('month', now()) + interval '3 months';
+BEGIN
+    WHILE month <= last LOOP
+        EXECUTE format('CREATE TABLE %I PARTITION OF orders FOR VALUES FROM (%L) TO (%L)',
+                       'orders_p' || to_char(month, 'YYYY_MM'), month, month + interval '1 month');
+        EXECUTE format('CREATE TABLE %I PARTITION OF order_items FOR VALUES FROM (%L) TO (%L)',
+                       'order_items_p' || to_char(month, 'YYYY_MM'), month, month + interval '1 month');
+        month := month + interval '1 month';
+    END LOOP;
+END $$;
+
+INSERT INTO orders (id, userId, status, createdAt, deliveryAddress, paymentType)
+SELECT id, userId, status, createdAt, deliveryAddress, paymentType
+FROM orders_unpartitioned;
+
+INSERT INTO order_items (id, order_id, createdAt, productId, quantity)
+SELECT i.id, i.order_id, o.createdAt, i.productId, i.quantity
+FROM order_items_unpartitioned i
+JOIN orders_unpartitioned o ON o.id = i.order_id;
+
+DROP TABLE order_items_unpartitioned;
+DROP TABLE orders_unpartitioned;
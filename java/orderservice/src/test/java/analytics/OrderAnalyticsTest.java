@@ -0,0 +1,87 @@
+package analytics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dtos.OrderAnalyticsDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Feeds the analytics the same JSON the order exchanges carry, as written by OrderEventPublisher
+class OrderAnalyticsTest {
+
+    private static final UUID KEYBOARD = UUID.randomUUID();
+    private static final UUID MOUSE = UUID.randomUUID();
+
+    private OrderAnalytics analytics;
+
+    @BeforeEach
+    void setUp() {
+        analytics = new OrderAnalytics();
+        analytics.mapper = new ObjectMapper();
+        analytics.bucketSize = Duration.ofMinutes(1);
+        analytics.bucketCount = 60;
+        analytics.productsPerBucket = 16;
+        analytics.init();
+    }
+
+    @Test
+    void countsOrdersFromAnyReplica() {
+        LocalDateTime now = LocalDateTime.now();
+        analytics.receiveOrderCreated(created(now, KEYBOARD, 2, MOUSE, 1));
+        analytics.receiveOrderCreated(created(now, MOUSE, 5, KEYBOARD, 1));
+
+        OrderAnalyticsDto stats = analytics.snapshot(Duration.ofHours(1), 10);
+
+        assertEquals(2, stats.orders);
+        assertEquals(9, stats.units);
+        assertEquals(MOUSE.toString(), stats.topProducts.get(0).productId);
+        assertEquals(6, stats.topProducts.get(0).units);
+        assertEquals(3, stats.topProducts.get(1).units);
+    }
+
+    @Test
+    void deletionRetractsFromTheBucketTheOrderWasCreatedIn() {
+        LocalDateTime earlier = LocalDateTime.now().minusMinutes(10);
+        analytics.receiveOrderCreated(created(earlier, KEYBOARD, 3, MOUSE, 1));
+        analytics.receiveOrderCreated(created(LocalDateTime.now(), KEYBOARD, 1, MOUSE, 1));
+
+        analytics.receiveOrderDeleted(deleted(earlier, KEYBOARD, 3, MOUSE, 1));
+
+        OrderAnalyticsDto stats = analytics.snapshot(Duration.ofHours(1), 10);
+        assertEquals(1, stats.orders);
+        assertEquals(2, stats.units);
+        // Only the last five minutes: the deleted order's bucket is outside it anyway
+        assertEquals(1, analytics.snapshot(Duration.ofMinutes(5), 10).orders);
+    }
+
+    @Test
+    void ignoresOrdersOlderThanTheWindowAndBadMessages() {
+        analytics.receiveOrderCreated(created(LocalDateTime.now().minusHours(2), KEYBOARD, 1, MOUSE, 1));
+        analytics.receiveOrderCreated("{not json");
+        analytics.receiveOrderDeleted(deleted(LocalDateTime.now(), KEYBOARD, 1, MOUSE, 1));
+
+        OrderAnalyticsDto stats = analytics.snapshot(Duration.ofHours(1), 10);
+        assertEquals(0, stats.orders);
+        assertTrue(stats.topProducts.isEmpty());
+    }
+
+    private static String created(LocalDateTime createdAt, UUID first, int firstQuantity, UUID second, int secondQuantity) {
+        return """
+                {"type":"OrderCreated","orderId":"%s","userId":"%s","createdAt":"%s",
+                 "items":[{"productId":"%s","quantity":%d},{"productId":"%s","quantity":%d}]}
+                """.formatted(UUID.randomUUID(), UUID.randomUUID(), createdAt, first, firstQuantity, second, secondQuantity);
+    }
+
+    private static String deleted(LocalDateTime createdAt, UUID first, int firstQuantity, UUID second, int secondQuantity) {
+        return """
+                {"type":"OrderDeleted","orderId":"%s","status":"PENDING","createdAt":"%s",
+                 "items":[{"productId":"%s","quantity":%d},{"productId":"%s","quantity":%d}]}
+                """.formatted(UUID.randomUUID(), createdAt, first, firstQuantity, second, secondQuantity);
+    }
+}
@@ -0,0 +1,108 @@
+package analytics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ProductCounterMapTest {
+
+    @Test
+    void putGetAndAddTo() {
+        ProductCounterMap map = new ProductCounterMap(8);
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+
+        assertEquals(-1, get(map, a));
+        map.put(a.getMostSignificantBits(), a.getLeastSignificantBits(), 5);
+        assertEquals(7, map.addTo(a.getMostSignificantBits(), a.getLeastSignificantBits(), 2));
+        assertEquals(3, map.addTo(b.getMostSignificantBits(), b.getLeastSignificantBits(), 3));
+
+        assertEquals(7, get(map, a));
+        assertEquals(3, get(map, b));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    void rejectsNewKeysOnceFullButStillUpdatesExistingOnes() {
+        ProductCounterMap map = new ProductCounterMap(2);
+        UUID a = UUID.randomUUID();
+        map.addTo(a.getMostSignificantBits(), a.getLeastSignificantBits(), 1);
+        map.addTo(1, 1, 1);
+
+        assertThrows(IllegalStateException.class, () -> map.addTo(2, 2, 1));
+        assertEquals(2, map.addTo(a.getMostSignificantBits(), a.getLeastSignificantBits(), 1));
+
+        map.remove(1, 1);
+        map.addTo(2, 2, 1);
+        assertEquals(2, map.size());
+    }
+
+    // Random puts, increments and removes on a nearly full table, checked against a HashMap after every step.
+    // Removal has to keep colliding keys reachable, which only shows up once probe chains overlap.
+    @Test
+    void matchesHashMapUnderRandomOperations() {
+        int maxSize = 64;
+        ProductCounterMap map = new ProductCounterMap(maxSize);
+        Map<UUID, Long> expected = new HashMap<>();
+        UUID[] keys = new UUID[maxSize];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = UUID.randomUUID();
+        }
+
+        Random random = new Random(42);
+        for (int step = 0; step < 100_000; step++) {
+            UUID key = keys[random.nextInt(keys.length)];
+            long msb = key.getMostSignificantBits();
+            long lsb = key.getLeastSignificantBits();
+            switch (random.nextInt(3)) {
+                case 0 -> {
+                    long delta = random.nextInt(10);
+                    map.addTo(msb, lsb, delta);
+                    expected.merge(key, delta, Long::sum);
+                }
+                case 1 -> {
+                    long value = random.nextInt(100);
+                    map.put(msb, lsb, value);
+                    expected.put(key, value);
+                }
+                default -> {
+                    map.remove(msb, lsb);
+                    expected.remove(key);
+                }
+            }
+
+            assertEquals(expected.size(), map.size());
+            for (UUID k : keys) {
+                assertEquals(expected.getOrDefault(k, -1L), get(map, k), "step " + step);
+            }
+        }
+
+        Map<UUID, Long> iterated = new HashMap<>();
+        map.forEach((msb, lsb, value) -> iterated.put(new UUID(msb, lsb), value));
+        assertEquals(expected, iterated);
+    }
+
+    @Test
+    void clearEmptiesTheMap() {
+        ProductCounterMap map = new ProductCounterMap(4);
+        map.addTo(1, 1, 1);
+        map.addTo(2, 2, 1);
+        map.clear();
+
+        assertEquals(0, map.size());
+        assertEquals(-1, map.get(1, 1, -1));
+        map.forEach((msb, lsb, value) -> {
+            throw new AssertionError("cleared map still has an entry");
+        });
+    }
+
+    private static long get(ProductCounterMap map, UUID key) {
+        return map.get(key.getMostSignificantBits(), key.getLeastSignificantBits(), -1);
+    }
+}
@@ -0,0 +1,120 @@
+package analytics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpaceSavingSketchTest {
+
+    private record Entry(long count, long error) {}
+
+    @Test
+    void countsExactlyWhileProductsFit() {
+        SpaceSavingSketch sketch = new SpaceSavingSketch(4);
+        sketch.offer(1, 1, 3);
+        sketch.offer(2, 2, 1);
+        sketch.offer(1, 1, 2);
+
+        Map<UUID, Entry> entries = entries(sketch);
+        assertEquals(new Entry(5, 0), entries.get(new UUID(1, 1)));
+        assertEquals(new Entry(1, 0), entries.get(new UUID(2, 2)));
+        assertEquals(2, entries.size());
+    }
+
+    @Test
+    void evictsTheSmallestCounterAndInheritsItsCountAsError() {
+        SpaceSavingSketch sketch = new SpaceSavingSketch(2);
+        sketch.offer(1, 1, 5);
+        sketch.offer(2, 2, 2);
+        sketch.offer(3, 3, 1);
+
+        Map<UUID, Entry> entries = entries(sketch);
+        assertEquals(2, entries.size());
+        assertEquals(new Entry(5, 0), entries.get(new UUID(1, 1)));
+        assertEquals(new Entry(3, 2), entries.get(new UUID(3, 3)));
+
+        // The evicted product comes back with the new minimum as its error
+        sketch.offer(2, 2, 1);
+        entries = entries(sketch);
+        assertEquals(new Entry(4, 3), entries.get(new UUID(2, 2)));
+        assertFalse(entries.containsKey(new UUID(3, 3)));
+    }
+
+    @Test
+    void retractDecrementsTrackedProductsAndStopsAtZero() {
+        SpaceSavingSketch sketch = new SpaceSavingSketch(2);
+        sketch.offer(1, 1, 5);
+        sketch.retract(1, 1, 2);
+        sketch.retract(9, 9, 2);
+        assertEquals(new Entry(3, 0), entries(sketch).get(new UUID(1, 1)));
+
+        sketch.retract(1, 1, 10);
+        assertEquals(new Entry(0, 0), entries(sketch).get(new UUID(1, 1)));
+        assertEquals(1, entries(sketch).size());
+    }
+
+    @Test
+    void clearDropsEverything() {
+        SpaceSavingSketch sketch = new SpaceSavingSketch(2);
+        sketch.offer(1, 1, 1);
+        sketch.offer(2, 2, 1);
+        sketch.offer(3, 3, 1);
+        sketch.clear();
+
+        assertTrue(entries(sketch).isEmpty());
+        sketch.offer(3, 3, 2);
+        assertEquals(Map.of(new UUID(3, 3), new Entry(2, 0)), entries(sketch));
+    }
+
+    // Skewed weighted stream with far more products than counters. For every tracked product the true count lies
+    // in [count - error, count], the error never exceeds total/capacity, and every product heavier than that is kept.
+    @Test
+    void keepsTheErrorBoundOnASkewedStream() {
+        int capacity = 50;
+        int products = 5_000;
+        SpaceSavingSketch sketch = new SpaceSavingSketch(capacity);
+        Map<UUID, Long> truth = new HashMap<>();
+        long total = 0;
+
+        Random random = new Random(7);
+        for (int i = 0; i < 200_000; i++) {
+            // Cubing a uniform value favours low ids, giving a handful of heavy hitters and a long tail
+            double u = random.nextDouble();
+            UUID product = new UUID(0, (long) (u * u * u * products));
+            long weight = 1 + random.nextInt(3);
+            sketch.offer(product.getMostSignificantBits(), product.getLeastSignificantBits(), weight);
+            truth.merge(product, weight, Long::sum);
+            total += weight;
+        }
+
+        long bound = total / capacity;
+        Map<UUID, Entry> entries = entries(sketch);
+        assertEquals(capacity, entries.size());
+        for (Map.Entry<UUID, Entry> tracked : entries.entrySet()) {
+            long actual = truth.getOrDefault(tracked.getKey(), 0L);
+            Entry entry = tracked.getValue();
+            assertTrue(entry.count() - entry.error() <= actual && actual <= entry.count(),
+                    () -> tracked.getKey() + ": " + actual + " outside " + entry);
+            assertTrue(entry.error() <= bound, () -> tracked.getKey() + ": error " + entry.error() + " above " + bound);
+        }
+        for (Map.Entry<UUID, Long> product : truth.entrySet()) {
+            if (product.getValue() > bound) {
+                assertTrue(entries.containsKey(product.getKey()),
+                        () -> "heavy hitter " + product.getKey() + " with " + product.getValue() + " was evicted");
+            }
+        }
+    }
+
+    private static Map<UUID, Entry> entries(SpaceSavingSketch sketch) {
+        Map<UUID, Entry> entries = new HashMap<>();
+        sketch.forEach((msb, lsb, count, error) -> entries.put(new UUID(msb, lsb), new Entry(count, error)));
+        return entries;
+    }
+}
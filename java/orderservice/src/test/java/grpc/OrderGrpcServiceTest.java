@@ -0,0 +1,61 @@
+package grpc;
+
+import io.smallrye.mutiny.Multi;
+import org.junit.jupiter.api.Test;
+import org.vladyslavplus.orderservice.OrderStatusUpdateResult;
+import org.vladyslavplus.orderservice.UpdateOrderStatusRequest;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OrderGrpcServiceTest {
+
+    // A client streaming faster than the database applies batches: the window timer keeps closing batches while the
+    // worker is busy, and they have to wait for it rather than fail the stream
+    @Test
+    void slowBatchesDoNotFailAFastStatusStream() {
+        AtomicInteger batches = new AtomicInteger();
+        OrderGrpcService service = new OrderGrpcService() {
+            @Override
+            List<OrderStatusUpdateResult> applyStatusBatch(List<UpdateOrderStatusRequest> batch) {
+                batches.incrementAndGet();
+                try {
+                    Thread.sleep(4);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return batch.stream()
+                        .map(request -> OrderStatusUpdateResult.newBuilder()
+                                .setOrderId(request.getOrderId())
+                                .setStatus(request.getStatus())
+                                .setUpdated(true)
+                                .build())
+                        .toList();
+            }
+        };
+        service.statusStreamBatchSize = 200;
+        service.statusStreamBatchWindow = Duration.ofMillis(2);
+        service.statusStreamMaxPendingBatches = 1_000;
+
+        Multi<UpdateOrderStatusRequest> requests = Multi.createFrom().ticks().every(Duration.ofMillis(1))
+                .onOverflow().buffer()
+                .select().first(1_000)
+                .map(i -> UpdateOrderStatusRequest.newBuilder()
+                        .setOrderId(UUID.randomUUID().toString())
+                        .setStatus("SHIPPED")
+                        .build());
+
+        List<OrderStatusUpdateResult> results = service.streamOrderStatusUpdates(requests)
+                .collect().asList()
+                .await().atMost(Duration.ofSeconds(30));
+
+        assertEquals(1_000, results.size());
+        assertTrue(results.stream().allMatch(OrderStatusUpdateResult::getUpdated));
+        assertTrue(batches.get() > 16, () -> "only " + batches.get() + " batches, the consumer never fell behind");
+    }
+}
@@ -0,0 +1,129 @@
+package messaging;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CartEventConsumerTest {
+
+    private static final UUID PRODUCT = UUID.randomUUID();
+    private static final int USERS = 4;
+    private static final int WRITERS = 4;
+    private static final int EVENTS_PER_WRITER = 20_000;
+    private static final int READERS = 4;
+
+    // Stands in for cart_projection: the committed sequence per user, advanced before the snapshot is published
+    private final Map<UUID, AtomicLong> committed = new ConcurrentHashMap<>();
+    private final List<UUID> users = new ArrayList<>();
+    private CartEventConsumer consumer;
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < USERS; i++) {
+            UUID userId = UUID.randomUUID();
+            users.add(userId);
+            committed.put(userId, new AtomicLong());
+        }
+
+        // A load reads the committed state and then stalls, so newer events can commit and publish before it returns
+        consumer = new CartEventConsumer() {
+            @Override
+            CartSnapshot load(UUID userId) {
+                CartSnapshot snapshot = snapshot(committed.get(userId).get());
+                Thread.yield();
+                return snapshot;
+            }
+        };
+        // Fewer slots than users, so the size bound keeps evicting and reads keep racing lazy loads against publishes
+        consumer.hotSetMaxSize = USERS / 2;
+        consumer.init();
+    }
+
+    @Test
+    void publishNeverLetsAnOlderSnapshotReplaceANewerOne() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(WRITERS + READERS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ConcurrentLinkedQueue<String> violations = new ConcurrentLinkedQueue<>();
+
+        List<Future<?>> writers = new ArrayList<>();
+        for (int w = 0; w < WRITERS; w++) {
+            writers.add(pool.submit(() -> {
+                await(start);
+                for (int i = 0; i < EVENTS_PER_WRITER; i++) {
+                    UUID userId = users.get(ThreadLocalRandom.current().nextInt(USERS));
+                    long sequence = committed.get(userId).incrementAndGet();
+                    consumer.publish(userId, snapshot(sequence));
+                }
+            }));
+        }
+
+        // Readers model getCart and checkout: what one thread sees for a user must never go back in time
+        List<Future<?>> readers = new ArrayList<>();
+        for (int r = 0; r < READERS; r++) {
+            readers.add(pool.submit(() -> {
+                await(start);
+                Map<UUID, Long> lastSeen = new HashMap<>();
+                while (writing.get()) {
+                    UUID userId = users.get(ThreadLocalRandom.current().nextInt(USERS));
+                    CartSnapshot cart = consumer.getCart(userId);
+                    if (!cart.equals(snapshot(cart.sequence()))) {
+                        violations.add("torn snapshot " + cart);
+                    }
+                    Long previous = lastSeen.put(userId, cart.sequence());
+                    if (previous != null && previous > cart.sequence()) {
+                        violations.add("user " + userId + " went from " + previous + " back to " + cart.sequence());
+                    }
+                }
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> writer : writers) {
+            writer.get(1, TimeUnit.MINUTES);
+        }
+        writing.set(false);
+        for (Future<?> reader : readers) {
+            reader.get(1, TimeUnit.MINUTES);
+        }
+        pool.shutdown();
+
+        assertTrue(violations.isEmpty(), () -> violations.size() + " violations, e.g. " + violations.peek());
+        for (UUID userId : users) {
+            assertEquals(committed.get(userId).get(), consumer.getCart(userId).sequence(),
+                    "the last committed snapshot must win for user " + userId);
+        }
+    }
+
+    // Every snapshot carries its own sequence as the quantity, so a mixed-up snapshot is detectable
+    private static CartSnapshot snapshot(long sequence) {
+        return sequence == 0 ? CartSnapshot.EMPTY : new CartSnapshot(sequence, Map.of(PRODUCT, (int) sequence));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
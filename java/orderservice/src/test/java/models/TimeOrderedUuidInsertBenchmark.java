@@ -0,0 +1,79 @@
+package models;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Compares primary key inserts of UUIDv7 and random v4 ids on a real PostgreSQL. Random keys land all over the
+// B-tree, so they split more pages, leave them half full and touch more of the index per insert.
+// Run with: ./mvnw test -Dtest=TimeOrderedUuidInsertBenchmark -Dbenchmark.jdbc.url=jdbc:postgresql://localhost:5432/<db>
+@EnabledIfSystemProperty(named = "benchmark.jdbc.url", matches = ".+")
+class TimeOrderedUuidInsertBenchmark {
+
+    private static final int ROWS = Integer.getInteger("benchmark.rows", 500_000);
+    private static final int BATCH = 1_000;
+
+    @Test
+    void timeOrderedIdsInsertFasterIntoASmallerIndex() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(
+                System.getProperty("benchmark.jdbc.url"),
+                System.getProperty("benchmark.jdbc.user", "postgres"),
+                System.getProperty("benchmark.jdbc.password", "12345678"))) {
+            // Warm-up run, so the first measured table does not pay for connection and plan setup
+            run(connection, "uuid_bench_warmup", UUID::randomUUID, ROWS / 10);
+
+            Result random = run(connection, "uuid_bench_v4", UUID::randomUUID, ROWS);
+            Result timeOrdered = run(connection, "uuid_bench_v7", TimeOrderedUuidGenerator::next, ROWS);
+
+            System.out.printf("%,d rows  v4: %,d ms, index %,d KiB  v7: %,d ms, index %,d KiB%n", ROWS,
+                    random.millis(), random.indexBytes() / 1024, timeOrdered.millis(), timeOrdered.indexBytes() / 1024);
+            assertTrue(timeOrdered.indexBytes() < random.indexBytes(),
+                    "the time-ordered index should be denser than the random one");
+        }
+    }
+
+    private record Result(long millis, long indexBytes) {}
+
+    private static Result run(Connection connection, String table, Supplier<UUID> ids, int rows) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS " + table);
+            statement.execute("CREATE TABLE " + table + " (id uuid PRIMARY KEY, payload text NOT NULL)");
+        }
+
+        connection.setAutoCommit(false);
+        long start = System.nanoTime();
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO " + table + " VALUES (?, ?)")) {
+            for (int i = 1; i <= rows; i++) {
+                insert.setObject(1, ids.get());
+                insert.setString(2, "order line " + i);
+                insert.addBatch();
+                if (i % BATCH == 0) {
+                    insert.executeBatch();
+                    connection.commit();
+                }
+            }
+            insert.executeBatch();
+            connection.commit();
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        connection.setAutoCommit(true);
+
+        try (Statement statement = connection.createStatement();
+             ResultSet size = statement.executeQuery("SELECT pg_relation_size('" + table + "_pkey')")) {
+            size.next();
+            long indexBytes = size.getLong(1);
+            statement.execute("DROP TABLE " + table);
+            return new Result(millis, indexBytes);
+        }
+    }
+}
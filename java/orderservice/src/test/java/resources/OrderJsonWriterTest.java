@@ -0,0 +1,165 @@
+package resources;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.protobuf.Message;
+import dtos.OrderDto;
+import dtos.OrderItemDto;
+import dtos.OrdersPageDto;
+import jakarta.ws.rs.core.MediaType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.vladyslavplus.orderservice.Order;
+import org.vladyslavplus.orderservice.OrderItem;
+import org.vladyslavplus.orderservice.OrdersPage;
+import org.vladyslavplus.orderservice.OrdersResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OrderJsonWriterTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private OrderJsonWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        writer = new OrderJsonWriter();
+        writer.mapper = mapper;
+    }
+
+    @Test
+    void writesAnOrderLikeTheOrderDto() throws IOException {
+        Order order = order(3, "Main St. 1, \"Apt 2\"\nKyiv – Über");
+
+        assertEquals(mapper.readTree(mapper.writeValueAsBytes(legacyDto(order))), mapper.readTree(write(order)));
+    }
+
+    @Test
+    void writesAnOrderWithoutItems() throws IOException {
+        Order order = order(0, "");
+
+        assertEquals(mapper.readTree(mapper.writeValueAsBytes(legacyDto(order))), mapper.readTree(write(order)));
+    }
+
+    @Test
+    void writesOrderListsLikeAListOfOrderDtos() throws IOException {
+        OrdersResponse response = OrdersResponse.newBuilder()
+                .addOrders(order(1, "a"))
+                .addOrders(order(2, "b"))
+                .build();
+        List<OrderDto> legacy = response.getOrdersList().stream()
+                .map(OrderJsonWriterTest::legacyDto)
+                .collect(Collectors.toList());
+
+        assertEquals(mapper.readTree(mapper.writeValueAsBytes(legacy)), mapper.readTree(write(response)));
+    }
+
+    @Test
+    void writesPagesWithAndWithoutACursor() throws IOException {
+        OrdersPage last = OrdersPage.newBuilder().addOrders(order(1, "a")).build();
+        OrdersPage more = last.toBuilder().setNextPageToken("token").build();
+
+        assertEquals(mapper.readTree(mapper.writeValueAsBytes(legacyPage(last))), mapper.readTree(write(last)));
+        assertEquals(mapper.readTree(mapper.writeValueAsBytes(legacyPage(more))), mapper.readTree(write(more)));
+    }
+
+    // Bytes allocated on this thread per 50-order page, after warm-up, for the writer and for the DTO path it replaced
+    @Test
+    void allocatesLessThanMappingToDtos() throws IOException {
+        OrdersPage page = OrdersPage.newBuilder()
+                .addAllOrders(IntStream.range(0, 50).mapToObj(i -> order(4, "Street " + i)).toList())
+                .setNextPageToken("token")
+                .build();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+
+        long direct = allocatedPerCall(() -> {
+            out.reset();
+            writer.writeTo(page, OrdersPage.class, null, null, MediaType.APPLICATION_JSON_TYPE, null, out);
+        });
+        long legacy = allocatedPerCall(() -> {
+            out.reset();
+            mapper.writeValue(out, legacyPage(page));
+        });
+
+        System.out.printf("Bytes allocated per 50-order page: writer %,d, DTO mapping %,d%n", direct, legacy);
+        assertTrue(direct < legacy, () -> "writer allocated " + direct + " bytes, DTO mapping " + legacy);
+    }
+
+    private interface Write {
+        void run() throws IOException;
+    }
+
+    private static long allocatedPerCall(Write write) throws IOException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        int calls = 20_000;
+        for (int i = 0; i < calls; i++) {
+            write.run();
+        }
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < calls; i++) {
+            write.run();
+        }
+        return (threads.getCurrentThreadAllocatedBytes() - before) / calls;
+    }
+
+    private byte[] write(Message message) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.writeTo(message, message.getClass(), null, null, MediaType.APPLICATION_JSON_TYPE, null, out);
+        return out.toByteArray();
+    }
+
+    private static Order order(int items, String deliveryAddress) {
+        Order.Builder order = Order.newBuilder()
+                .setId(UUID.randomUUID().toString())
+                .setUserId(UUID.randomUUID().toString())
+                .setDeliveryAddress(deliveryAddress)
+                .setPaymentType("CARD")
+                .setStatus("PENDING")
+                .setCreatedAtString("2026-10-19T17:52:55.123");
+        for (int i = 0; i < items; i++) {
+            order.addItems(OrderItem.newBuilder()
+                    .setProductId(UUID.randomUUID().toString())
+                    .setQuantity(i + 1));
+        }
+        return order.build();
+    }
+
+    // The mapping OrderResource used before OrderJsonWriter
+    private static OrderDto legacyDto(Order order) {
+        OrderDto dto = new OrderDto();
+        dto.id = order.getId();
+        dto.userId = order.getUserId();
+        dto.deliveryAddress = order.getDeliveryAddress();
+        dto.paymentType = order.getPaymentType();
+        dto.status = order.getStatus();
+        dto.createdAt = order.getCreatedAtString();
+
+        dto.items = order.getItemsList().stream()
+                .map(item -> {
+                    var itemDto = new OrderItemDto();
+                    itemDto.productId = item.getProductId();
+                    itemDto.quantity = item.getQuantity();
+                    return itemDto;
+                })
+                .collect(Collectors.toList());
+
+        return dto;
+    }
+
+    private static OrdersPageDto legacyPage(OrdersPage page) {
+        OrdersPageDto dto = new OrdersPageDto();
+        dto.orders = page.getOrdersList().stream()
+                .map(OrderJsonWriterTest::legacyDto)
+                .collect(Collectors.toList());
+        dto.nextCursor = page.getNextPageToken().isEmpty() ? null : page.getNextPageToken();
+        return dto;
+    }
+}